@@ -0,0 +1,87 @@
+package me.gorky.automata.regex.bench;
+
+import me.gorky.automata.regex.DfaHelper;
+import me.gorky.automata.regex.NfaHelper;
+import me.gorky.automata.regex.PositionHelper;
+import me.gorky.automata.regex.TreeHelper;
+import me.gorky.automata.regex.structures.Node;
+import me.gorky.automata.regex.structures.State;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// every phase of the pipeline on its own, fed with the output of the previous phase that was computed once up front;
+// javaUtilRegexCompile is the baseline; buildPositionDfa goes from the tree to the DFA in one go, so it compares to buildNfaAndDfa
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark) // qualified, since State is the automaton state here
+public class CompileBenchmark {
+
+    @Param({"ALTERNATION", "STAR_NESTED", "EXPONENTIAL_BLOWUP", "LONG_LITERAL", "COUNTED_REPETITION"})
+    public PatternFamily family;
+
+    private String regex;
+
+    private Node root;
+
+    private State nfaEntry;
+
+    private State dfaEntry;
+
+    private Set<Set<State>> equivalenceClasses;
+
+    @Setup
+    public void setUp() throws Exception {
+        regex = family.regex();
+        root = TreeHelper.buildSyntaxTree(regex);
+        nfaEntry = NfaHelper.buildNfa(root);
+        dfaEntry = DfaHelper.buildDfa(nfaEntry);
+        equivalenceClasses = DfaHelper.getEquivalenceClasses(dfaEntry);
+    }
+
+    @Benchmark
+    public Node buildSyntaxTree() throws Exception {
+        return TreeHelper.buildSyntaxTree(regex);
+    }
+
+    @Benchmark
+    public State buildNfa() throws Exception {
+        return NfaHelper.buildNfa(root);
+    }
+
+    @Benchmark
+    public State buildDfa() throws Exception {
+        return DfaHelper.buildDfa(nfaEntry);
+    }
+
+    // the whole of the subset construction path, tree -> NFA -> DFA
+    @Benchmark
+    public State buildNfaAndDfa() throws Exception {
+        return DfaHelper.buildDfa(NfaHelper.buildNfa(root));
+    }
+
+    @Benchmark
+    public State buildPositionDfa() throws Exception {
+        return PositionHelper.buildDfa(root);
+    }
+
+    @Benchmark
+    public Set<Set<State>> getEquivalenceClasses() throws Exception {
+        return DfaHelper.getEquivalenceClasses(dfaEntry);
+    }
+
+    @Benchmark
+    public State buildMinimizedDfa() throws Exception {
+        return DfaHelper.buildDfa(equivalenceClasses);
+    }
+
+    @Benchmark
+    public java.util.regex.Pattern javaUtilRegexCompile() {
+        return java.util.regex.Pattern.compile(regex);
+    }
+
+}
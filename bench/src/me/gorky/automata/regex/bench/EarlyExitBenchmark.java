@@ -0,0 +1,56 @@
+package me.gorky.automata.regex.bench;
+
+import me.gorky.automata.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// long inputs decided by their first chars: matching stops once it reaches an accepting-forever state, while the same input
+// against a regex without one is read to the end; javaUtilRegexMatches is the baseline
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EarlyExitBenchmark {
+
+    // accepting forever after the prefix, and the same inputs matched to the end
+    @Param({"id=[0-9]+;.*", "id=[0-9]+;[a-z=;]*"})
+    public String regex;
+
+    @Param({"1024", "65536"})
+    public int inputLength;
+
+    private String input;
+
+    private Pattern pattern;
+
+    private java.util.regex.Pattern javaPattern;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(inputLength);
+        StringBuilder sb = new StringBuilder("id=42;");
+
+        while (sb.length() < inputLength) {
+            sb.append("abcz=;".charAt(random.nextInt(6)));
+        }
+
+        input = sb.toString();
+        pattern = Pattern.compile(regex);
+        javaPattern = java.util.regex.Pattern.compile(regex);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return pattern.matches(input);
+    }
+
+    @Benchmark
+    public boolean javaUtilRegexMatches() {
+        return javaPattern.matcher(input).matches();
+    }
+
+}
@@ -0,0 +1,65 @@
+package me.gorky.automata.regex.bench;
+
+import me.gorky.automata.regex.CompiledDfa;
+import me.gorky.automata.regex.DfaHelper;
+import me.gorky.automata.regex.NfaHelper;
+import me.gorky.automata.regex.TreeHelper;
+import me.gorky.automata.regex.structures.State;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// matching a minimized DFA against inputs of different lengths; javaUtilRegexMatches is the baseline
+// checkString flattens the DFA into a table on every call, matches runs the table compiled once up front
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss512m") // java.util.regex recurses once per repetition, the default stack overflows on long inputs
+@org.openjdk.jmh.annotations.State(Scope.Benchmark) // qualified, since State is the automaton state here
+public class MatchBenchmark {
+
+    @Param({"ALTERNATION", "STAR_NESTED", "EXPONENTIAL_BLOWUP", "LONG_LITERAL", "COUNTED_REPETITION"})
+    public PatternFamily family;
+
+    @Param({"16", "1024", "65536"})
+    public int inputLength;
+
+    private String input;
+
+    private State dfaEntry;
+
+    private CompiledDfa dfa;
+
+    private java.util.regex.Pattern javaPattern;
+
+    @Setup
+    public void setUp() throws Exception {
+        String regex = family.regex();
+        input = family.input(inputLength, new Random(inputLength));
+        dfaEntry = DfaHelper.minimize(DfaHelper.buildDfa(NfaHelper.buildNfa(TreeHelper.buildSyntaxTree(regex))));
+        dfa = DfaHelper.compile(dfaEntry);
+        javaPattern = java.util.regex.Pattern.compile(regex);
+
+        if (!dfa.matches(input) || !javaPattern.matcher(input).matches()) {
+            throw new IllegalStateException("The input of " + family + " doesn't match its regex");
+        }
+    }
+
+    @Benchmark
+    public boolean checkString() throws Exception {
+        return DfaHelper.checkString(input, dfaEntry);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return dfa.matches(input);
+    }
+
+    @Benchmark
+    public boolean javaUtilRegexMatches() {
+        return javaPattern.matcher(input).matches();
+    }
+
+}
@@ -0,0 +1,143 @@
+package me.gorky.automata.regex.bench;
+
+import java.util.Random;
+
+// the kinds of regexes the benchmarks are run over, each with a generator of matching inputs of a given length
+public enum PatternFamily {
+
+    // (w1|w2|...|w32)*, a wide alternation of short words
+    ALTERNATION {
+        @Override
+        public String regex() {
+            StringBuilder sb = new StringBuilder("(");
+
+            for (int i = 0; i < WORDS.length; i++) {
+                sb.append(i == 0 ? "" : "|").append(WORDS[i]);
+            }
+
+            return sb.append(")*").toString();
+        }
+
+        @Override
+        public String input(int length, Random random) {
+            StringBuilder sb = new StringBuilder(length + 8);
+
+            while (sb.length() < length) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+
+            return sb.toString();
+        }
+    },
+
+    // stars within stars, with lots of ε-transitions
+    STAR_NESTED {
+        @Override
+        public String regex() {
+            return "((((a*b)*c*)*(d|a*)*)*b*)*";
+        }
+
+        @Override
+        public String input(int length, Random random) {
+            return randomString(length, "abcd", random);
+        }
+    },
+
+    // (a|b)*a(a|b)(a|b)...: the n-th char from the end is 'a', so the DFA has 2^n states
+    EXPONENTIAL_BLOWUP {
+        @Override
+        public String regex() {
+            StringBuilder sb = new StringBuilder("(a|b)*a");
+
+            for (int i = 0; i < BLOWUP_DEPTH; i++) {
+                sb.append("(a|b)");
+            }
+
+            return sb.toString();
+        }
+
+        @Override
+        public String input(int length, Random random) {
+            char[] input = randomString(Math.max(length, BLOWUP_DEPTH + 1), "ab", random).toCharArray();
+            input[input.length - BLOWUP_DEPTH - 1] = 'a';
+
+            return new String(input);
+        }
+    },
+
+    // a single literal of LITERAL_LENGTH chars, matched by inputs that repeat it
+    LONG_LITERAL {
+        @Override
+        public String regex() {
+            return "(" + literal() + ")*";
+        }
+
+        @Override
+        public String input(int length, Random random) {
+            StringBuilder sb = new StringBuilder(length + LITERAL_LENGTH);
+
+            while (sb.length() < length) {
+                sb.append(literal());
+            }
+
+            return sb.toString();
+        }
+    },
+
+    // (([a-z]{1,8}-){1,REPETITION_COUNT}[0-9]{4};)*, records of counted repetitions that used to be written out by hand
+    COUNTED_REPETITION {
+        @Override
+        public String regex() {
+            return "(([a-z]{1,8}-){1," + REPETITION_COUNT + "}[0-9]{4};)*";
+        }
+
+        @Override
+        public String input(int length, Random random) {
+            StringBuilder sb = new StringBuilder(length + 1024);
+
+            while (sb.length() < length) {
+                int wordCount = 1 + random.nextInt(REPETITION_COUNT);
+
+                for (int i = 0; i < wordCount; i++) {
+                    sb.append(randomString(1 + random.nextInt(8), "abcdefghijklmnopqrstuvwxyz", random)).append('-');
+                }
+
+                sb.append(randomString(4, "0123456789", random)).append(';');
+            }
+
+            return sb.toString();
+        }
+    };
+
+    public static final int BLOWUP_DEPTH = 10;
+
+    public static final int REPETITION_COUNT = 100;
+
+    public static final int LITERAL_LENGTH = 2000;
+
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliet", "kilo", "lima", "mike", "november", "oscar",
+            "papa", "quebec", "romeo", "sierra", "tango", "uniform", "victor", "whiskey", "xray", "yankee", "zulu", "alto", "bass", "cello", "drum",
+            "flute", "harp"
+    };
+
+    public abstract String regex();
+
+    // an input of at least the given length that the regex matches
+    public abstract String input(int length, Random random);
+
+    private static String literal() {
+        return randomString(LITERAL_LENGTH, "abcdefghijklmnopqrstuvwxyz", new Random(LITERAL_LENGTH));
+    }
+
+    private static String randomString(int length, String letters, Random random) {
+        StringBuilder sb = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            sb.append(letters.charAt(random.nextInt(letters.length())));
+        }
+
+        return sb.toString();
+    }
+
+}
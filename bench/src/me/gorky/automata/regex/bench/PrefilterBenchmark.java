@@ -0,0 +1,70 @@
+package me.gorky.automata.regex.bench;
+
+import me.gorky.automata.regex.CompileOptions;
+import me.gorky.automata.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// non-matching inputs against regexes that require literals, with and without the prefilter; javaUtilRegexMatches is the baseline
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrefilterBenchmark {
+
+    // a single factor, several factors, a suffix
+    @Param({".*error[0-9]*.*", ".*(error|fatal|panic)[0-9]*.*", "[a-z ]*(error|fatal)"})
+    public String regex;
+
+    @Param({"1024", "65536"})
+    public int inputLength;
+
+    private String input;
+
+    private Pattern filtered;
+
+    private Pattern unfiltered;
+
+    private java.util.regex.Pattern javaPattern;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(inputLength);
+        StringBuilder sb = new StringBuilder(inputLength);
+
+        while (sb.length() < inputLength) {
+            sb.append("abcdgh ".charAt(random.nextInt(7))); // none of the required literals can turn up
+        }
+
+        input = sb.toString();
+        filtered = Pattern.compile(regex);
+        CompileOptions options = new CompileOptions();
+        options.setUsePrefilter(false);
+        unfiltered = Pattern.compile(regex, options);
+        javaPattern = java.util.regex.Pattern.compile(regex);
+
+        if (filtered.getPrefilter() == null || filtered.matches(input) || unfiltered.matches(input)) {
+            throw new IllegalStateException("The input of " + regex + " isn't rejected by its prefilter");
+        }
+    }
+
+    @Benchmark
+    public boolean withPrefilter() {
+        return filtered.matches(input);
+    }
+
+    @Benchmark
+    public boolean withoutPrefilter() {
+        return unfiltered.matches(input);
+    }
+
+    @Benchmark
+    public boolean javaUtilRegexMatches() {
+        return javaPattern.matcher(input).matches();
+    }
+
+}
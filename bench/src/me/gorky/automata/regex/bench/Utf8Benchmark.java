@@ -0,0 +1,71 @@
+package me.gorky.automata.regex.bench;
+
+import me.gorky.automata.regex.CompileOptions;
+import me.gorky.automata.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// matching UTF-8 bytes: decoded into a String for a pattern over chars, or run over directly by a pattern lowered to bytes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Utf8Benchmark {
+
+    private static final String REGEX = "((дек|велик)аа*н *)*"; // the sample from Main
+
+    @Param({"1024", "65536"})
+    public int inputLength;
+
+    private byte[] input;
+
+    private ByteBuffer directInput;
+
+    private Pattern charPattern;
+
+    private Pattern bytePattern;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(inputLength);
+        StringBuilder sb = new StringBuilder(inputLength);
+
+        while (sb.length() < inputLength) {
+            sb.append(random.nextBoolean() ? "декан " : "великаан ");
+        }
+
+        input = sb.toString().getBytes(StandardCharsets.UTF_8);
+        directInput = ByteBuffer.allocateDirect(input.length);
+        directInput.put(input).flip();
+        charPattern = Pattern.compile(REGEX);
+        CompileOptions options = new CompileOptions();
+        options.setUtf8(true);
+        bytePattern = Pattern.compile(REGEX, options);
+
+        if (!charPattern.matches(input) || !bytePattern.matches(input) || !bytePattern.matches(directInput)) {
+            throw new IllegalStateException("The input doesn't match " + REGEX);
+        }
+    }
+
+    @Benchmark
+    public boolean decodeAndMatch() {
+        return charPattern.matches(input);
+    }
+
+    @Benchmark
+    public boolean matchBytes() {
+        return bytePattern.matches(input);
+    }
+
+    @Benchmark
+    public boolean matchDirectBuffer() {
+        return bytePattern.matches(directInput);
+    }
+
+}
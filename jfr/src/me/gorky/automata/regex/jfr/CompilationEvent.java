@@ -0,0 +1,40 @@
+package me.gorky.automata.regex.jfr;
+
+import jdk.jfr.*;
+
+// spans the whole compilation, from the start of its first phase to the end of its last one; -1 stands for the parts that weren't built
+@Name("me.gorky.automata.regex.Compilation")
+@Label("Regex Compilation")
+@Category("Automata Regex")
+@Description("Compiling a regex into a pattern, with the sizes of everything that was built on the way")
+@StackTrace(false)
+class CompilationEvent extends Event {
+
+    @Label("Regex")
+    String regex;
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Syntax Tree Size")
+    int treeSize;
+
+    @Label("NFA States")
+    int nfaStateCount;
+
+    @Label("DFA States")
+    int dfaStateCount;
+
+    @Label("Equivalence Classes")
+    int equivalenceClassCount;
+
+    @Label("Minimized DFA States")
+    int minimizedDfaStateCount;
+
+    @Label("Char Classes")
+    int charClassCount;
+
+    @Label("Transitions")
+    int transitionCount;
+
+}
@@ -0,0 +1,18 @@
+package me.gorky.automata.regex.jfr;
+
+import jdk.jfr.*;
+
+@Name("me.gorky.automata.regex.CompilationPhase")
+@Label("Regex Compilation Phase")
+@Category("Automata Regex")
+@Description("A single phase of compiling a regex, such as building the NFA or minimizing the DFA")
+@StackTrace(false)
+class CompilationPhaseEvent extends Event {
+
+    @Label("Regex")
+    String regex;
+
+    @Label("Phase")
+    String phase;
+
+}
@@ -0,0 +1,90 @@
+package me.gorky.automata.regex.jfr;
+
+import me.gorky.automata.regex.CompilationListener;
+import me.gorky.automata.regex.structures.CompilationStats;
+
+// emits Flight Recorder events for compilations: one per phase and one for the whole compilation
+// while the events are disabled in the recording settings, they are neither filled in nor committed
+public class JfrCompilationListener implements CompilationListener {
+
+    private final CompilationListener delegate;
+
+    // the phases don't nest and the whole compilation happens on one thread, so a single slot of each kind per thread is enough
+    private final ThreadLocal<CompilationPhaseEvent> phaseEvents = new ThreadLocal<>();
+
+    private final ThreadLocal<CompilationEvent> compilationEvents = new ThreadLocal<>();
+
+    public JfrCompilationListener() {
+        this(null);
+    }
+
+    // everything is passed on to the delegate as well, so that the events can go along with some other listener
+    public JfrCompilationListener(CompilationListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void phaseStarted(String regex, CompilationStats.Phase phase) {
+        if (phase == CompilationStats.Phase.PARSE) {
+            CompilationEvent compilationEvent = new CompilationEvent();
+            compilationEvent.begin();
+            compilationEvents.set(compilationEvent);
+        }
+
+        CompilationPhaseEvent phaseEvent = new CompilationPhaseEvent();
+        phaseEvent.begin();
+        phaseEvents.set(phaseEvent);
+
+        if (delegate != null) {
+            delegate.phaseStarted(regex, phase);
+        }
+    }
+
+    @Override
+    public void phaseFinished(String regex, CompilationStats.Phase phase, long nanos) {
+        CompilationPhaseEvent phaseEvent = phaseEvents.get();
+        phaseEvents.remove();
+
+        if (phaseEvent != null) {
+            phaseEvent.end();
+
+            if (phaseEvent.shouldCommit()) {
+                phaseEvent.regex = regex;
+                phaseEvent.phase = phase.name();
+                phaseEvent.commit();
+            }
+        }
+
+        if (delegate != null) {
+            delegate.phaseFinished(regex, phase, nanos);
+        }
+    }
+
+    @Override
+    public void compiled(CompilationStats stats) {
+        CompilationEvent compilationEvent = compilationEvents.get();
+        compilationEvents.remove();
+
+        if (compilationEvent != null) {
+            compilationEvent.end();
+
+            if (compilationEvent.shouldCommit()) {
+                compilationEvent.regex = stats.getRegex();
+                compilationEvent.engine = stats.getEngine();
+                compilationEvent.treeSize = stats.getTreeSize();
+                compilationEvent.nfaStateCount = stats.getNfaStateCount();
+                compilationEvent.dfaStateCount = stats.getDfaStateCount();
+                compilationEvent.equivalenceClassCount = stats.getEquivalenceClassCount();
+                compilationEvent.minimizedDfaStateCount = stats.getMinimizedDfaStateCount();
+                compilationEvent.charClassCount = stats.getCharClassCount();
+                compilationEvent.transitionCount = stats.getTransitionCount();
+                compilationEvent.commit();
+            }
+        }
+
+        if (delegate != null) {
+            delegate.compiled(stats);
+        }
+    }
+
+}
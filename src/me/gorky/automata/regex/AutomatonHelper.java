@@ -1,5 +1,6 @@
 package me.gorky.automata.regex;
 
+import me.gorky.automata.regex.structures.CharClassMap;
 import me.gorky.automata.regex.structures.State;
 
 import java.util.*;
@@ -7,7 +8,7 @@ import java.util.*;
 public class AutomatonHelper {
 
     public static void printAutomaton(State entry) {
-        if (entry.getTransitions().keySet().isEmpty()) {
+        if (entry.getAlphabet().isEmpty()) {
             System.out.println(State.ENTRY_STATE_SYMBOL + "" + State.EXIT_STATE_SYMBOL + entry.getId() + ": -\r\n");
             return;
         }
@@ -15,13 +16,53 @@ public class AutomatonHelper {
         TreeMap<String, List<String>> adjacencyList = formAdjacencyList(entry);
         int[] columnWidths = determineColumnWidths(adjacencyList);
 
-        printRow("", toListOfStrings(entry.getTransitions().keySet()), columnWidths, true);
+        printRow("", toListOfStrings(entry.getAlphabet(), entry.getCharClasses()), columnWidths, true);
         for (String rowName : adjacencyList.keySet()) {
             printRow(rowName, adjacencyList.get(rowName), columnWidths, false);
         }
         System.out.println("");
     }
 
+    public static int countStates(State entry) {
+        return getReachableStates(entry).size();
+    }
+
+    // ε-transitions count too, except for the implicit loops
+    public static int countTransitions(State entry) {
+        int count = 0;
+
+        for (State state : getReachableStates(entry)) {
+            count += state.getEdgeCount() + state.getEpsilonDestinations().size();
+        }
+
+        return count;
+    }
+
+    // through both letters and ε
+    private static List<State> getReachableStates(State entry) {
+        List<State> states = new ArrayList<>();
+        Set<State> visited = new HashSet<>();
+        states.add(entry);
+        visited.add(entry);
+
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            List<State> destinations = new ArrayList<>(state.getEpsilonDestinations());
+
+            for (int edge = 0; edge < state.getEdgeCount(); edge++) {
+                destinations.add(state.getEdgeDestination(edge));
+            }
+
+            for (State destination : destinations) {
+                if (visited.add(destination)) {
+                    states.add(destination);
+                }
+            }
+        }
+
+        return states;
+    }
+
     private static TreeMap<String, List<String>> formAdjacencyList(State entry) {
         TreeMap<String, List<String>> adjacencyList = new TreeMap<>(new Comparator<String>() {
             @Override
@@ -127,14 +168,15 @@ public class AutomatonHelper {
         System.out.println("");
     }
 
-    private static List<String> toListOfStrings(Set<Character> set) {
+    // letters are shown as the classes they stand for
+    private static List<String> toListOfStrings(Set<Character> set, CharClassMap classes) {
         List<String> list = new ArrayList<>();
 
         for (Character ch : set) {
             if (ch == null) {
                 list.add(null);
             } else {
-                list.add(Character.toString(ch));
+                list.add(classes.describe(classes.classOf(ch)));
             }
         }
 
@@ -0,0 +1,131 @@
+package me.gorky.automata.regex;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+// matches many inputs against a single engine in parallel; the inputs are split into chunks, so that every task does plenty of work
+public class BatchHelper {
+
+    public static final int CHUNK_SIZE = 4096; // a multiple of 64, so that no two chunks share a word of the resulting bitset
+
+    // bit i is set if inputs[i] matches
+    public static BitSet matchAll(MatchEngine engine, List<? extends CharSequence> inputs) {
+        return matchAll(engine, inputs, ForkJoinPool.commonPool());
+    }
+
+    public static BitSet matchAll(MatchEngine engine, List<? extends CharSequence> inputs, ForkJoinPool pool) {
+        List<? extends CharSequence> list = toRandomAccess(inputs);
+        long[] words = new long[(list.size() + 63) / 64];
+        pool.invoke(new MatchTask(engine, list, words, 0, list.size()));
+
+        return BitSet.valueOf(words);
+    }
+
+    public static long countMatches(MatchEngine engine, List<? extends CharSequence> inputs) {
+        return countMatches(engine, inputs, ForkJoinPool.commonPool());
+    }
+
+    public static long countMatches(MatchEngine engine, List<? extends CharSequence> inputs, ForkJoinPool pool) {
+        List<? extends CharSequence> list = toRandomAccess(inputs);
+        return pool.invoke(new CountTask(engine, list, 0, list.size()));
+    }
+
+    public static long countMatches(MatchEngine engine, Stream<? extends CharSequence> inputs) {
+        return inputs.parallel().filter(engine::matches).count();
+    }
+
+    // the tasks index into the list, which would be quadratic for a linked one
+    private static List<? extends CharSequence> toRandomAccess(List<? extends CharSequence> inputs) {
+        return inputs instanceof RandomAccess ? inputs : new ArrayList<>(inputs);
+    }
+
+    // splits [from, to) at a multiple of the chunk size
+    private static int split(int from, int to) {
+        return from + ((to - from) / 2 + CHUNK_SIZE - 1) / CHUNK_SIZE * CHUNK_SIZE;
+    }
+
+    private static class MatchTask extends RecursiveAction {
+
+        private final MatchEngine engine;
+
+        private final List<? extends CharSequence> inputs;
+
+        private final long[] words;
+
+        private final int from;
+
+        private final int to;
+
+        private MatchTask(MatchEngine engine, List<? extends CharSequence> inputs, long[] words, int from, int to) {
+            this.engine = engine;
+            this.inputs = inputs;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = split(from, to);
+                invokeAll(new MatchTask(engine, inputs, words, from, middle), new MatchTask(engine, inputs, words, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                if (engine.matches(inputs.get(i))) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+
+    }
+
+    private static class CountTask extends RecursiveTask<Long> {
+
+        private final MatchEngine engine;
+
+        private final List<? extends CharSequence> inputs;
+
+        private final int from;
+
+        private final int to;
+
+        private CountTask(MatchEngine engine, List<? extends CharSequence> inputs, int from, int to) {
+            this.engine = engine;
+            this.inputs = inputs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = split(from, to);
+                CountTask right = new CountTask(engine, inputs, middle, to);
+                right.fork();
+                long left = new CountTask(engine, inputs, from, middle).compute();
+
+                return left + right.join();
+            }
+
+            long count = 0;
+
+            for (int i = from; i < to; i++) {
+                if (engine.matches(inputs.get(i))) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+    }
+
+}
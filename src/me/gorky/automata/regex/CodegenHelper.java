@@ -0,0 +1,341 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.structures.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// emits a subclass of GeneratedDfa for a DFA, so that the JIT compiles the automaton itself instead of a loop over a table
+// the class file is of version 49, which needs no stack map frames; every class gets a loader of its own, so it's unloaded along with the matcher
+public class CodegenHelper {
+
+    // HotSpot doesn't compile methods with more bytecode than that, and a table would be faster than interpreted code
+    public static final int MAX_CODE_SIZE = 8000;
+
+    private static final String BASE_CLASS = "me/gorky/automata/regex/GeneratedDfa";
+
+    private static final String DFA_DESCRIPTOR = "Lme/gorky/automata/regex/CompiledDfa;";
+
+    private static final String CLASSES_CLASS = "me/gorky/automata/regex/structures/CharClassMap";
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    // opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int ILOAD_2 = 0x1c;
+    private static final int ILOAD_3 = 0x1d;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ISTORE_2 = 0x3d;
+    private static final int ISTORE_3 = 0x3e;
+    private static final int ASTORE = 0x3a;
+    private static final int IINC = 0x84;
+    private static final int IF_ICMPLT = 0xa1;
+    private static final int GOTO = 0xa7;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEINTERFACE = 0xb9;
+
+    // the code of the DFA's minimized form, such as the one buildDfa(Set<Set<State>>) returns
+    public static MatchEngine generate(State dfaEntry) throws FlawedLogicException {
+        return generate(DfaHelper.compile(dfaEntry));
+    }
+
+    // the DFA itself if its code would be too large
+    public static MatchEngine generate(CompiledDfa dfa) throws FlawedLogicException {
+        String className = "me/gorky/automata/regex/GeneratedDfa$" + COUNTER.incrementAndGet();
+        byte[] classFile;
+
+        try {
+            classFile = emitClass(className, dfa);
+        } catch (IOException ex) {
+            throw new FlawedLogicException("Couldn't emit the class: " + ex.getMessage());
+        }
+
+        if (classFile == null) {
+            return dfa;
+        }
+
+        try {
+            Class<?> generatedClass = new GeneratedClassLoader(GeneratedDfa.class.getClassLoader()).define(className.replace('/', '.'), classFile);
+            return (MatchEngine) generatedClass.getConstructor(CompiledDfa.class).newInstance(dfa);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            throw new FlawedLogicException("Couldn't load the generated class: " + ex);
+        }
+    }
+
+    // null if the code is too large
+    private static byte[] emitClass(String className, CompiledDfa dfa) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(className);
+        int superClass = pool.classRef(BASE_CLASS);
+        int matchEngine = pool.classRef("me/gorky/automata/regex/MatchEngine");
+        int codeAttribute = pool.utf8("Code");
+        int superConstructor = pool.memberRef(10, BASE_CLASS, "<init>", "(" + DFA_DESCRIPTOR + ")V");
+        int constructorName = pool.utf8("<init>");
+        int constructorDescriptor = pool.utf8("(" + DFA_DESCRIPTOR + ")V");
+        int matchesName = pool.utf8("matches");
+        int matchesDescriptor = pool.utf8("(Ljava/lang/CharSequence;)Z");
+
+        byte[] matchesCode = emitMatches(dfa, pool); // the pool is complete after that
+
+        if (matchesCode == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0); // minor version
+        out.writeShort(49); // major version, Java 5
+        pool.writeTo(out);
+        out.writeShort(0x1031); // public final synthetic super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(matchEngine);
+        out.writeShort(0); // fields
+
+        out.writeShort(2); // methods
+        // public <init>(CompiledDfa dfa) { super(dfa); }
+        byte[] constructorCode = {
+                (byte) ALOAD_0, (byte) ALOAD_1, (byte) INVOKESPECIAL, (byte) (superConstructor >> 8), (byte) superConstructor, (byte) RETURN
+        };
+        writeMethod(out, constructorName, constructorDescriptor, codeAttribute, 2, 2, constructorCode);
+        // public boolean matches(CharSequence input)
+        writeMethod(out, matchesName, matchesDescriptor, codeAttribute, 3, 5, matchesCode);
+
+        out.writeShort(0); // attributes
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttribute, int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    // locals: 0 - this, 1 - input, 2 - the index of the next char, 3 - the input's length, 4 - the char classes
+    // every state is a block that returns whether the state is accepting at the end of the input (or right away if it's dead or accepting forever),
+    // or else reads a char and switches over its class to the destination's block, or to the block returning false for the dead state
+    private static byte[] emitMatches(CompiledDfa dfa, ConstantPool pool) {
+        int classesField = pool.memberRef(9, BASE_CLASS, "classes", "L" + CLASSES_CLASS + ";");
+        int length = pool.memberRef(11, "java/lang/CharSequence", "length", "()I");
+        int charAt = pool.memberRef(11, "java/lang/CharSequence", "charAt", "(I)C");
+        int classOf = pool.memberRef(10, CLASSES_CLASS, "classOf", "(C)I");
+        int stateCount = dfa.getStateCount();
+        int classCount = dfa.getClasses().getClassCount();
+
+        Code code = new Code();
+        code.write(ALOAD_0).write(GETFIELD).writeShort(classesField).write(ASTORE).write(4);
+        code.write(ICONST_0).write(ISTORE_2);
+        code.write(ALOAD_1).write(INVOKEINTERFACE).writeShort(length).write(1).write(0).write(ISTORE_3);
+        code.jump(GOTO, dfa.getEntry());
+
+        int deadBlock = stateCount;
+        int[] blockStarts = new int[stateCount + 1];
+
+        for (int state = 0; state < stateCount; state++) {
+            blockStarts[state] = code.size();
+            boolean isDead = true;
+
+            for (int charClass = 0; charClass < classCount && isDead; charClass++) {
+                isDead = dfa.getTransition(state, charClass) == CompiledDfa.DEAD_STATE;
+            }
+
+            if (dfa.isDead(state) || dfa.isAcceptingForever(state)) { // the rest of the input can't change the outcome
+                code.write(dfa.isAccepting(state) ? ICONST_1 : ICONST_0).write(IRETURN);
+                continue;
+            }
+
+            // if (i >= length) return accepting;
+            code.write(ILOAD_2).write(ILOAD_3).write(IF_ICMPLT).writeShort(5);
+            code.write(dfa.isAccepting(state) ? ICONST_1 : ICONST_0).write(IRETURN);
+
+            if (isDead) {
+                code.jump(GOTO, deadBlock);
+                continue;
+            }
+
+            // switch (classes.classOf(input.charAt(i++)))
+            code.write(ALOAD).write(4).write(ALOAD_1).write(ILOAD_2);
+            code.write(INVOKEINTERFACE).writeShort(charAt).write(2).write(0);
+            code.write(INVOKEVIRTUAL).writeShort(classOf);
+            code.write(IINC).write(2).write(1);
+
+            int switchStart = code.size();
+            code.write(TABLESWITCH);
+
+            while (code.size() % 4 != 0) {
+                code.write(0);
+            }
+
+            code.switchOffset(switchStart, deadBlock);
+            code.writeInt(0);
+            code.writeInt(classCount - 1);
+
+            for (int charClass = 0; charClass < classCount; charClass++) {
+                int destination = dfa.getTransition(state, charClass);
+                code.switchOffset(switchStart, destination == CompiledDfa.DEAD_STATE ? deadBlock : destination);
+            }
+
+            if (code.size() > MAX_CODE_SIZE) {
+                return null;
+            }
+        }
+
+        blockStarts[deadBlock] = code.size();
+        code.write(ICONST_0).write(IRETURN);
+
+        return code.size() > MAX_CODE_SIZE ? null : code.toByteArray(blockStarts);
+    }
+
+    // bytecode with jumps to blocks that are yet to be emitted, which get patched once every block's start is known
+    private static class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final List<int[]> jumps = new ArrayList<>(); // {position of the offset, position of the instruction, block, width}
+
+        private Code write(int b) {
+            bytes.write(b);
+            return this;
+        }
+
+        private Code writeShort(int value) {
+            return write(value >> 8).write(value);
+        }
+
+        private Code writeInt(int value) {
+            return writeShort(value >> 16).writeShort(value);
+        }
+
+        private void jump(int opcode, int block) {
+            int instruction = size();
+            write(opcode);
+            jumps.add(new int[]{size(), instruction, block, 2});
+            writeShort(0);
+        }
+
+        private void switchOffset(int instruction, int block) {
+            jumps.add(new int[]{size(), instruction, block, 4});
+            writeInt(0);
+        }
+
+        private int size() {
+            return bytes.size();
+        }
+
+        private byte[] toByteArray(int[] blockStarts) {
+            byte[] code = bytes.toByteArray();
+
+            for (int[] jump : jumps) {
+                int offset = blockStarts[jump[2]] - jump[1];
+
+                for (int i = 0; i < jump[3]; i++) {
+                    code[jump[0] + i] = (byte) (offset >> 8 * (jump[3] - 1 - i));
+                }
+            }
+
+            return code;
+        }
+
+    }
+
+    // the entries are deduplicated, every one of them takes a single slot
+    private static class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        private int utf8(String value) {
+            return add("utf8 " + value, 1, value, -1, -1);
+        }
+
+        private int classRef(String name) {
+            return add("class " + name, 7, null, utf8(name), -1);
+        }
+
+        // tag: 9 for a field, 10 for a method, 11 for an interface method
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameAndType = add("nameAndType " + name + " " + descriptor, 12, null, utf8(name), utf8(descriptor));
+
+            return add("member " + tag + " " + owner + "." + name + descriptor, tag, null, ownerIndex, nameAndType);
+        }
+
+        private int add(String key, int tag, String value, int first, int second) {
+            Integer index = indexes.get(key);
+
+            if (index != null) {
+                return index;
+            }
+
+            try {
+                out.writeByte(tag);
+
+                if (value != null) {
+                    out.writeUTF(value);
+                } else {
+                    out.writeShort(first);
+
+                    if (second != -1) {
+                        out.writeShort(second);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex); // can't happen with an in-memory stream
+            }
+
+            index = indexes.size() + 1;
+            indexes.put(key, index);
+
+            return index;
+        }
+
+        private void writeTo(DataOutputStream classFile) throws IOException {
+            classFile.writeShort(indexes.size() + 1);
+            bytes.writeTo(classFile);
+        }
+
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+
+    }
+
+}
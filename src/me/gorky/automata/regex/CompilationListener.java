@@ -0,0 +1,19 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.CompilationStats;
+
+// gets told about the compilations of Patterns, on the compiling threads; see CompileOptions.setListener
+// the phases don't nest, and a phase that fails with an exception is never finished
+public interface CompilationListener {
+
+    default void phaseStarted(String regex, CompilationStats.Phase phase) {
+    }
+
+    default void phaseFinished(String regex, CompilationStats.Phase phase, long nanos) {
+    }
+
+    // after the last phase of a successful compilation
+    default void compiled(CompilationStats stats) {
+    }
+
+}
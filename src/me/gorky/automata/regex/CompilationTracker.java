@@ -0,0 +1,54 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.CompilationStats;
+
+// times the phases of a single compilation for a listener; without one it only reads the clock,
+// and the counts, which may take a pass over an automaton, aren't collected at all
+class CompilationTracker {
+
+    private final CompilationListener listener;
+
+    private final CompilationStats stats;
+
+    private CompilationStats.Phase phase = null;
+
+    private long phaseStart;
+
+    CompilationTracker(String regex, CompilationListener listener) {
+        this.listener = listener;
+        this.stats = listener == null ? null : new CompilationStats(regex);
+    }
+
+    boolean isEnabled() {
+        return listener != null;
+    }
+
+    // null if it's disabled
+    CompilationStats getStats() {
+        return stats;
+    }
+
+    void start(CompilationStats.Phase phase) {
+        if (listener != null) {
+            this.phase = phase;
+            listener.phaseStarted(stats.getRegex(), phase);
+            phaseStart = System.nanoTime();
+        }
+    }
+
+    void finish() {
+        if (listener != null) {
+            long nanos = System.nanoTime() - phaseStart;
+            stats.setPhaseNanos(phase, nanos);
+            listener.phaseFinished(stats.getRegex(), phase, nanos);
+        }
+    }
+
+    void compiled(Pattern.Engine engine) {
+        if (listener != null) {
+            stats.setEngine(engine.name());
+            listener.compiled(stats);
+        }
+    }
+
+}
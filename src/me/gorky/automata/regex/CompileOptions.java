@@ -0,0 +1,98 @@
+package me.gorky.automata.regex;
+
+public class CompileOptions {
+
+    public static final int DEFAULT_MAX_DFA_STATES = 10000;
+
+    private Pattern.Engine engine = Pattern.Engine.AUTO;
+
+    private Pattern.Construction construction = Pattern.Construction.SUBSET; // how the DFA and AUTO engines get their DFAs
+
+    private int maxDfaStates = DEFAULT_MAX_DFA_STATES; // AUTO falls back to the NFA simulation past this many DFA states
+
+    private int maxRepetitionExpansion = TreeHelper.DEFAULT_MAX_REPETITION_EXPANSION; // regexes whose counted repetitions add more NFA states are rejected
+
+    private long lazyCacheCapacity = LazyDfa.DEFAULT_CACHE_CAPACITY; // bytes, per matching thread
+
+    private boolean generateCode = false; // whether DFAs get turned into bytecode, see CodegenHelper
+
+    private boolean utf8 = false; // whether the pattern matches UTF-8 bytes rather than chars, see Utf8Helper
+
+    private boolean usePrefilter = true; // whether inputs lacking the literals the regex requires are rejected before the engine runs
+
+    private CompilationListener listener = null;
+
+    public Pattern.Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Pattern.Engine engine) {
+        this.engine = engine;
+    }
+
+    public Pattern.Construction getConstruction() {
+        return construction;
+    }
+
+    public void setConstruction(Pattern.Construction construction) {
+        this.construction = construction;
+    }
+
+    public int getMaxDfaStates() {
+        return maxDfaStates;
+    }
+
+    public void setMaxDfaStates(int maxDfaStates) {
+        this.maxDfaStates = maxDfaStates;
+    }
+
+    public int getMaxRepetitionExpansion() {
+        return maxRepetitionExpansion;
+    }
+
+    public void setMaxRepetitionExpansion(int maxRepetitionExpansion) {
+        this.maxRepetitionExpansion = maxRepetitionExpansion;
+    }
+
+    public long getLazyCacheCapacity() {
+        return lazyCacheCapacity;
+    }
+
+    public void setLazyCacheCapacity(long lazyCacheCapacity) {
+        this.lazyCacheCapacity = lazyCacheCapacity;
+    }
+
+    public boolean isGenerateCode() {
+        return generateCode;
+    }
+
+    public void setGenerateCode(boolean generateCode) {
+        this.generateCode = generateCode;
+    }
+
+    public boolean isUtf8() {
+        return utf8;
+    }
+
+    public void setUtf8(boolean utf8) {
+        this.utf8 = utf8;
+    }
+
+    public boolean isUsePrefilter() {
+        return usePrefilter;
+    }
+
+    public void setUsePrefilter(boolean usePrefilter) {
+        this.usePrefilter = usePrefilter;
+    }
+
+    public CompilationListener getListener() {
+        return listener;
+    }
+
+    // null for none
+    public void setListener(CompilationListener listener) {
+        this.listener = listener;
+    }
+
+}
@@ -0,0 +1,144 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.CharClassMap;
+
+// a DFA flattened into a transition table: rows are states, columns are char classes
+public class CompiledDfa implements MatchEngine {
+
+    public static final int DEAD_STATE = -1;
+
+    private final CharClassMap classes;
+
+    private final int classCount;
+
+    private final int entry;
+
+    private final int[] transitions;
+
+    private final boolean[] accepting;
+
+    private final int[][] acceptedPatterns; // for pattern sets: the ids of the patterns every state accepts
+
+    // the states the rest of the input can't change the outcome in (see DfaHelper.findDeadStates and findAcceptingForeverStates)
+    private final boolean[] dead;
+
+    private final boolean[] acceptingForever;
+
+    private final boolean[] decided; // either of the two
+
+    private final boolean hasDecidedStates; // if not, matching doesn't check for them at every char
+
+    public CompiledDfa(CharClassMap classes, int entry, int[] transitions, boolean[] accepting) {
+        this(classes, entry, transitions, accepting, new int[accepting.length][]);
+    }
+
+    public CompiledDfa(CharClassMap classes, int entry, int[] transitions, boolean[] accepting, int[][] acceptedPatterns) {
+        this.classes = classes;
+        this.classCount = classes.getClassCount();
+        this.entry = entry;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.acceptedPatterns = acceptedPatterns;
+
+        for (int state = 0; state < acceptedPatterns.length; state++) {
+            acceptedPatterns[state] = acceptedPatterns[state] == null ? new int[0] : acceptedPatterns[state];
+        }
+
+        this.dead = DfaHelper.findDeadStates(classCount, transitions, accepting);
+        this.acceptingForever = DfaHelper.findAcceptingForeverStates(classCount, transitions, accepting, acceptedPatterns);
+        this.decided = new boolean[accepting.length];
+        boolean hasDecidedStates = false;
+
+        for (int state = 0; state < accepting.length; state++) {
+            decided[state] = dead[state] || acceptingForever[state];
+            hasDecidedStates |= decided[state];
+        }
+
+        this.hasDecidedStates = hasDecidedStates;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        int state = entry;
+        int length = input.length();
+
+        if (!hasDecidedStates) {
+            for (int i = 0; i < length; i++) {
+                state = transitions[state * classCount + classes.classOf(input.charAt(i))];
+
+                if (state == DEAD_STATE) {
+                    return false;
+                }
+            }
+
+            return accepting[state];
+        }
+
+        for (int i = 0; i < length && !decided[state]; i++) {
+            state = transitions[state * classCount + classes.classOf(input.charAt(i))];
+
+            if (state == DEAD_STATE) {
+                return false;
+            }
+        }
+
+        return accepting[state];
+    }
+
+    // the state reached after the whole input, or DEAD_STATE; it stops early at a dead or accepting-forever state,
+    // which accepts the same patterns the state at the end would
+    public int run(CharSequence input) {
+        int state = entry;
+
+        for (int i = 0, length = input.length(); i < length && !isDecided(state); i++) {
+            state = transitions[state * classCount + classes.classOf(input.charAt(i))];
+        }
+
+        return state;
+    }
+
+    public int step(int state, char ch) {
+        return transitions[state * classCount + classes.classOf(ch)];
+    }
+
+    public int getTransition(int state, int charClass) {
+        return transitions[state * classCount + charClass];
+    }
+
+    public int getEntry() {
+        return entry;
+    }
+
+    public boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    // whether no input can lead from the state to an accepting one, true for DEAD_STATE as well
+    public boolean isDead(int state) {
+        return state == DEAD_STATE || dead[state];
+    }
+
+    // whether every input leads from the state to an accepting one, which accepts the same patterns
+    public boolean isAcceptingForever(int state) {
+        return state != DEAD_STATE && acceptingForever[state];
+    }
+
+    // whether the state is either, so that matching can stop in it
+    public boolean isDecided(int state) {
+        return state == DEAD_STATE || decided[state];
+    }
+
+    // sorted ascending, shouldn't be modified
+    public int[] getAcceptedPatterns(int state) {
+        return acceptedPatterns[state];
+    }
+
+    public int getStateCount() {
+        return accepting.length;
+    }
+
+    public CharClassMap getClasses() {
+        return classes;
+    }
+
+}
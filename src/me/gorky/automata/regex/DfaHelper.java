@@ -1,7 +1,11 @@
 package me.gorky.automata.regex;
 
 import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.exceptions.StateLimitException;
+import me.gorky.automata.regex.structures.CharClassMap;
+import me.gorky.automata.regex.structures.IndexedNfa;
 import me.gorky.automata.regex.structures.State;
+import me.gorky.automata.regex.structures.StateFactory;
 
 import java.util.*;
 
@@ -9,325 +13,503 @@ public class DfaHelper {
 
     // from NFA
     public static State buildDfa(State entry) throws FlawedLogicException {
-        State.setCounter(0);
+        return determinize(entry, Integer.MAX_VALUE);
+    }
+
+    // from NFA, giving up once the DFA gets more than maxStates states
+    public static State buildDfa(State entry, int maxStates) throws FlawedLogicException, StateLimitException {
+        State dfaEntry = determinize(entry, maxStates);
+
+        if (dfaEntry == null) {
+            throw new StateLimitException("The DFA has more than " + maxStates + " states");
+        }
+
+        return dfaEntry;
+    }
 
-        Set<Character> alphabet = new LinkedHashSet<>(entry.getTransitions().keySet());
-        alphabet.remove(null);
+    // returns null if the limit gets exceeded
+    private static State determinize(State entry, int maxStates) throws FlawedLogicException {
+        State newEntry = mergeStatesViaEpsilon(new IndexedNfa(entry), entry.getLetters(), maxStates);
 
-        if (alphabet.isEmpty()) {
-            State s = new State(alphabet);
-            s.makeEntry();
-            s.makeExit();
-            return s;
+        if (newEntry != null) {
+            newEntry.makeEntry();
         }
-        
-        State newEntry = mergeStatesViaEpsilon(getEpsilonDestinations(entry), new HashMap<>(), alphabet);
-        newEntry.makeEntry();
 
         return newEntry;
     }
 
     // from equivalence classes
     public static State buildDfa(Set<Set<State>> equivalenceClasses) throws FlawedLogicException {
-        State.setCounter(0);
         State oldEntry = findEntry(equivalenceClasses);
-        Map<State, State> oldToNewMap = getBlankOldToNewMap(equivalenceClasses);
-        Set<Character> alphabet = oldEntry.getTransitions().keySet();
-        State entry = mergeStates(oldEntry, equivalenceClasses, oldToNewMap, alphabet);
+        char[] letters = oldEntry.getLetters();
+        StateFactory factory = new StateFactory(oldEntry.getAlphabet(), oldEntry.getCharClasses());
+        Map<State, Set<State>> oldToClassMap = new HashMap<>();
+
+        for (Set<State> eqClass : equivalenceClasses) {
+            for (State state : eqClass) {
+                oldToClassMap.put(state, eqClass);
+            }
+        }
+
+        // every class is represented by the first of its states that was reached, since all of them behave the same way
+        Map<Set<State>, State> classToNewMap = new IdentityHashMap<>();
+        List<State> oldStates = new ArrayList<>();
+        List<State> newStates = new ArrayList<>();
+        oldStates.add(oldEntry);
+        newStates.add(mergeStates(oldToClassMap.get(oldEntry), factory));
+        classToNewMap.put(oldToClassMap.get(oldEntry), newStates.get(0));
+
+        for (int i = 0; i < oldStates.size(); i++) {
+            for (char letter : letters) {
+                State destination = oldStates.get(i).getDestination(letter);
+
+                if (destination == null) {
+                    continue;
+                }
+
+                Set<State> eqClass = oldToClassMap.get(destination);
+
+                if (eqClass == null) {
+                    throw new FlawedLogicException("Couldn't find state #" + destination.getId() + " in any of the equivalence classes");
+                }
+
+                if (!classToNewMap.containsKey(eqClass)) {
+                    oldStates.add(destination);
+                    newStates.add(mergeStates(eqClass, factory));
+                    classToNewMap.put(eqClass, newStates.get(newStates.size() - 1));
+                }
+
+                newStates.get(i).addTransition(letter, classToNewMap.get(eqClass));
+            }
+        }
+
+        markSinks(newStates);
+        State entry = newStates.get(0);
         entry.makeEntry();
 
         return entry;
     }
 
-    public static boolean checkString(String str, State dfaEntry) throws FlawedLogicException {
-        if (str.length() == 0) {
-            return dfaEntry.isExit();
-        }
-
-        TreeSet<State> destinations = dfaEntry.getTransitions().get(str.charAt(0));
+    // the states matching can stop in, since the rest of the input can't change the outcome; the table finds them (see CompiledDfa)
+    private static void markSinks(List<State> states) {
+        CompiledDfa dfa = compile(states);
 
-        if (destinations != null) {
-            if (destinations.size() != 1) {
-                throw new FlawedLogicException("Passed argument doesn't seem to be a DFA");
+        for (int i = 0; i < states.size(); i++) {
+            if (dfa.isDead(i)) {
+                states.get(i).makeDead();
             }
 
-            return checkString(str.substring(1), destinations.first());
+            if (dfa.isAcceptingForever(i)) {
+                states.get(i).makeAcceptingForever();
+            }
         }
-
-        return false;
     }
 
-    public static Set<Set<State>> getEquivalenceClasses(State dfaEntry) throws FlawedLogicException {
-        Set<Character> alphabet = dfaEntry.getTransitions().keySet();
-        Set<State> reachableStates = getReachableStates(dfaEntry, alphabet);
+    // the states of a table (as in CompiledDfa) no accepting state can be reached from: a backward search from the accepting ones
+    static boolean[] findDeadStates(int classCount, int[] transitions, boolean[] accepting) {
+        int stateCount = accepting.length;
+        int[][] predecessors = getPredecessors(classCount, transitions, stateCount);
+        boolean[] alive = new boolean[stateCount];
+        int[] queue = new int[stateCount];
+        int tail = 0;
+
+        for (int state = 0; state < stateCount; state++) {
+            if (accepting[state]) {
+                alive[state] = true;
+                queue[tail++] = state;
+            }
+        }
 
-        if (reachableStates.size() < 2) {
-            Set<Set<State>> ss = new HashSet<>();
-            ss.add(reachableStates);
-            return ss;
+        for (int head = 0; head < tail; head++) {
+            for (int predecessor : predecessors[queue[head]]) {
+                if (!alive[predecessor]) {
+                    alive[predecessor] = true;
+                    queue[tail++] = predecessor;
+                }
+            }
         }
 
-        return getEquivalenceClasses(reachableStates, alphabet);
-    }
+        boolean[] dead = new boolean[stateCount];
 
-    public static void printEquivalenceClasses(Set<Set<State>> equivalenceClasses) {
-        StringBuilder sb = new StringBuilder();
-        String delimiter = ", ";
-        sb.append("  ");
+        for (int state = 0; state < stateCount; state++) {
+            dead[state] = !alive[state];
+        }
 
-        for (Set<State> eqClass : equivalenceClasses) {
-            sb.append("{");
+        return dead;
+    }
 
-            for (State state : eqClass) {
-                sb.append(state.getId());
-                sb.append(delimiter);
+    // the accepting states of a table that every input leads to accepting states with the same accepted patterns from:
+    // the largest such set, found by starting from all of the candidates and dropping the ones that can leave it until none can
+    static boolean[] findAcceptingForeverStates(int classCount, int[] transitions, boolean[] accepting, int[][] acceptedPatterns) {
+        int stateCount = accepting.length;
+        boolean[] forever = new boolean[stateCount];
+        int[] queue = new int[stateCount];
+        int tail = 0;
+
+        for (int state = 0; state < stateCount; state++) {
+            forever[state] = accepting[state];
+
+            for (int charClass = 0; charClass < classCount && forever[state]; charClass++) {
+                int destination = transitions[state * classCount + charClass];
+                forever[state] = destination != CompiledDfa.DEAD_STATE && accepting[destination]
+                        && Arrays.equals(acceptedPatterns[state], acceptedPatterns[destination]);
             }
 
-            sb.setLength(sb.length() - delimiter.length());
-            sb.append("}");
-            sb.append(delimiter);
+            if (!forever[state]) {
+                queue[tail++] = state;
+            }
         }
 
-        sb.setLength(sb.length() - delimiter.length());
-        sb.append(System.lineSeparator());
-        System.out.println(sb.toString());
-    }
+        if (tail == stateCount) { // the usual case, no need for the predecessors
+            return forever;
+        }
 
-    private static State mergeStatesViaEpsilon(TreeSet<State> states, Map<String, State> mergedStates, Set<Character> alphabet) throws FlawedLogicException {
-        State mergedState = new State(alphabet);
-        mergedStates.put(getCombinedId(states), mergedState);
+        int[][] predecessors = getPredecessors(classCount, transitions, stateCount);
 
-        for (State state : states) {
-            if (state.isExit()) {
-                mergedState.makeExit();
+        for (int head = 0; head < tail; head++) {
+            for (int predecessor : predecessors[queue[head]]) {
+                if (forever[predecessor]) {
+                    forever[predecessor] = false;
+                    queue[tail++] = predecessor;
+                }
             }
         }
 
-        for (Character letter : alphabet) {
-            TreeSet<State> mergedDestinations = new TreeSet<>();
+        return forever;
+    }
 
-            for (State state : states) {
-                TreeSet<State> destinations = state.getTransitions().get(letter);
+    // per state, the states having a transition to it (once per transition)
+    private static int[][] getPredecessors(int classCount, int[] transitions, int stateCount) {
+        int[] counts = new int[stateCount];
 
-                if (destinations != null) {
-                    for (State destination : destinations) {
-                        mergedDestinations.addAll(getEpsilonDestinations(destination));
-                    }
-                }
+        for (int destination : transitions) {
+            if (destination != CompiledDfa.DEAD_STATE) {
+                counts[destination]++;
             }
+        }
 
-            if (mergedDestinations.size() > 0) {
-                String combinedId = getCombinedId(mergedDestinations);
+        int[][] predecessors = new int[stateCount][];
 
-                if (mergedStates.containsKey(combinedId)) {
-                    mergedState.addTransition(letter, mergedStates.get(combinedId));
-                } else {
-                    mergedState.addTransition(letter, mergeStatesViaEpsilon(mergedDestinations, mergedStates, alphabet));
-                }
+        for (int state = 0; state < stateCount; state++) {
+            predecessors[state] = new int[counts[state]];
+            counts[state] = 0;
+        }
+
+        for (int i = 0; i < transitions.length; i++) {
+            int destination = transitions[i];
+
+            if (destination != CompiledDfa.DEAD_STATE) {
+                predecessors[destination][counts[destination]++] = i / classCount;
             }
         }
 
-        return mergedState;
+        return predecessors;
     }
 
-    private static TreeSet<State> getEpsilonDestinations(State state) {
-        TreeSet<State> epsilonDestinations = new TreeSet<>();
-        getEpsilonDestinations(state, epsilonDestinations);
+    public static State minimize(State dfaEntry) throws FlawedLogicException {
+        return buildDfa(getEquivalenceClasses(dfaEntry));
+    }
 
-        return epsilonDestinations;
+    // flattens the DFA on every call, so it's only a shortcut for a single string;
+    // anything that matches many strings should compile the DFA once, with compile(State) or Pattern, and match against that
+    public static boolean checkString(String str, State dfaEntry) throws FlawedLogicException {
+        return compile(dfaEntry).matches(str);
     }
 
-    private static void getEpsilonDestinations(State state, TreeSet<State> epsilonDestinations) {
-        TreeSet<State> ed = state.getTransitions().get(null);
-        epsilonDestinations.addAll(ed);
+    // flattens a DFA into a table, numbering its states in breadth-first order (the entry state gets 0)
+    public static CompiledDfa compile(State dfaEntry) throws FlawedLogicException {
+        return compile(getReachableStates(dfaEntry));
+    }
 
-        for (State destination : ed) {
-            if (destination != state) {
-                getEpsilonDestinations(destination, epsilonDestinations);
+    // the states get their indices in the list, which has to hold every state their transitions lead to
+    private static CompiledDfa compile(List<State> states) {
+        CharClassMap classes = states.get(0).getCharClasses();
+        int classCount = classes.getClassCount();
+        Map<State, Integer> ids = new HashMap<>();
+
+        for (int i = 0; i < states.size(); i++) {
+            ids.put(states.get(i), i);
+        }
+
+        int[] transitions = new int[states.size() * classCount];
+        boolean[] accepting = new boolean[states.size()];
+        int[][] acceptedPatterns = new int[states.size()][];
+
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            accepting[i] = state.isExit();
+            acceptedPatterns[i] = new int[state.getAcceptedPatterns().size()];
+            int j = 0;
+
+            for (int patternId : state.getAcceptedPatterns()) {
+                acceptedPatterns[i][j++] = patternId;
+            }
+
+            for (int charClass = 0; charClass < classCount; charClass++) {
+                State destination = state.getDestination(classes.getRepresentative(charClass));
+                transitions[i * classCount + charClass] = destination == null ? CompiledDfa.DEAD_STATE : ids.get(destination);
             }
         }
+
+        return new CompiledDfa(classes, 0, transitions, accepting, acceptedPatterns);
+    }
+
+    // the DFA of .*R for a DFA of R, i.e. one that accepts any input having a suffix matched by the original DFA
+    // it's a subset construction over the original states, where every step also restarts from the entry state
+    public static CompiledDfa addPrefixLoop(CompiledDfa dfa) {
+        return prefixLoop(dfa, Integer.MAX_VALUE);
     }
 
-    private static String getCombinedId(TreeSet<State> states) {
-        String combinedId = "";
+    // giving up once the DFA gets more than maxStates states, since the subset construction may blow up here as well
+    public static CompiledDfa addPrefixLoop(CompiledDfa dfa, int maxStates) throws StateLimitException {
+        CompiledDfa loopedDfa = prefixLoop(dfa, maxStates);
 
-        for (State s : states) {
-            String delimiter = s == states.last() ? "" : ",";
-            combinedId += s.getId() + delimiter;
+        if (loopedDfa == null) {
+            throw new StateLimitException("The DFA has more than " + maxStates + " states");
         }
 
-        return combinedId;
+        return loopedDfa;
     }
 
-    private static Set<State> getReachableStates(State state, Set<Character> alphabet) throws FlawedLogicException {
-        Set<State> reachableStates = new TreeSet<>();
-        fillWithReachableStates(state, reachableStates, alphabet);
+    // returns null if the limit gets exceeded
+    private static CompiledDfa prefixLoop(CompiledDfa dfa, int maxStates) {
+        CharClassMap classes = dfa.getClasses();
+        int classCount = classes.getClassCount();
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        int[] transitions = new int[16 * classCount];
 
-        return reachableStates;
-    }
+        BitSet entrySet = new BitSet(dfa.getStateCount());
+        entrySet.set(dfa.getEntry());
+        ids.put(entrySet, 0);
+        sets.add(entrySet);
 
-    private static void fillWithReachableStates(State state, Set<State> reachableStates, Set<Character> alphabet) throws FlawedLogicException {
-        if (reachableStates.contains(state)) {
-            return;
-        } else {
-            reachableStates.add(state);
-        }
+        BitSet destinations = new BitSet(dfa.getStateCount());
+
+        for (int i = 0; i < sets.size(); i++) {
+            BitSet set = sets.get(i);
+
+            for (int charClass = 0; charClass < classCount; charClass++) {
+                destinations.clear();
+                destinations.set(dfa.getEntry());
 
-        for (Character letter : alphabet) {
-            TreeSet<State> destinations = state.getTransitions().get(letter);
+                for (int state = set.nextSetBit(0); state >= 0; state = set.nextSetBit(state + 1)) {
+                    int destination = dfa.getTransition(state, charClass);
+
+                    if (destination != CompiledDfa.DEAD_STATE) {
+                        destinations.set(destination);
+                    }
+                }
+
+                Integer id = ids.get(destinations);
+
+                if (id == null) { // the scratch set is only copied when it turns out to be new
+                    if (sets.size() == maxStates) {
+                        return null;
+                    }
+
+                    id = sets.size();
+                    BitSet copy = (BitSet) destinations.clone();
+                    ids.put(copy, id);
+                    sets.add(copy);
+                }
 
-            if (destinations != null) {
-                if (destinations.size() != 1) {
-                    throw new FlawedLogicException("Passed argument doesn't seem to be a DFA");
+                if ((i + 1) * classCount > transitions.length) {
+                    transitions = Arrays.copyOf(transitions, transitions.length * 2);
                 }
 
-                fillWithReachableStates(destinations.first(), reachableStates, alphabet);
+                transitions[i * classCount + charClass] = id;
             }
         }
-    }
 
-    private static Set<Set<State>> getEquivalenceClasses(Set<State> reachableStates, Set<Character> alphabet) throws FlawedLogicException {
-        Set<Set<State>> ndGroups = getNondistinguishableGroups(reachableStates, alphabet);
-        Set<Set<State>> equivalenceClasses = new LinkedHashSet<>(ndGroups);
+        boolean[] accepting = new boolean[sets.size()];
 
-        for (State state : reachableStates) {
-            if (!isInGroup(state, ndGroups)) {
-                Set<State> wrapper = new TreeSet<>();
-                wrapper.add(state);
-                equivalenceClasses.add(wrapper);
+        for (int i = 0; i < sets.size(); i++) {
+            for (int state = sets.get(i).nextSetBit(0); state >= 0 && !accepting[i]; state = sets.get(i).nextSetBit(state + 1)) {
+                accepting[i] = dfa.isAccepting(state);
             }
         }
 
-        return equivalenceClasses;
+        return new CompiledDfa(classes, 0, Arrays.copyOf(transitions, sets.size() * classCount), accepting);
     }
 
-    private static Set<Set<State>> getNondistinguishableGroups(Set<State> reachableStates, Set<Character> alphabet) throws FlawedLogicException {
-        Set<List<State>> ndPairs = getNondistinguishablePairs(new TreeSet<>(reachableStates), alphabet);
+    public static Set<Set<State>> getEquivalenceClasses(State dfaEntry) throws FlawedLogicException {
+        List<State> reachableStates = getReachableStates(dfaEntry);
 
-        return groupPairs(ndPairs);
+        if (reachableStates.size() < 2) {
+            Set<Set<State>> ss = new HashSet<>();
+            ss.add(new TreeSet<>(reachableStates));
+            return ss;
+        }
+
+        return getEquivalenceClasses(reachableStates, dfaEntry.getLetters());
     }
 
-    private static Set<List<State>> getNondistinguishablePairs(Set<State> reachableStates, Set<Character> alphabet) throws FlawedLogicException {
-        Set<List<State>> distinguishablePairs = new HashSet<>();
-        Set<List<State>> otherPairs = new LinkedHashSet<>();
+    public static void printEquivalenceClasses(Set<Set<State>> equivalenceClasses) {
+        StringBuilder sb = new StringBuilder();
+        String delimiter = ", ";
+        sb.append("  ");
 
-        for (Iterator<State> iterator = reachableStates.iterator(); iterator.hasNext(); ) {
-            State state1 = iterator.next();
+        for (Set<State> eqClass : equivalenceClasses) {
+            sb.append("{");
 
-            for (State state2 : reachableStates) {
-                if (state1 == state2) {
-                    continue;
-                }
+            for (State state : eqClass) {
+                sb.append(state.getId());
+                sb.append(delimiter);
+            }
 
-                List<State> pair = new ArrayList<>();
-                pair.add(state1);
-                pair.add(state2);
+            sb.setLength(sb.length() - delimiter.length());
+            sb.append("}");
+            sb.append(delimiter);
+        }
 
-                if (state1.isExit() == !state2.isExit()) {
-                    distinguishablePairs.add(pair);
-                } else {
-                    otherPairs.add(pair);
-                }
-            }
+        sb.setLength(sb.length() - delimiter.length());
+        sb.append(System.lineSeparator());
+        System.out.println(sb.toString());
+    }
+
+    // subset construction: every DFA state stands for a set of NFA states, the sets are interned by their bitsets
+    // returns null if there turn out to be more than maxStates states
+    private static State mergeStatesViaEpsilon(IndexedNfa nfa, char[] letters, int maxStates) throws FlawedLogicException {
+        CharClassMap classes = nfa.getClasses();
+        Set<Character> alphabet = new LinkedHashSet<>();
 
-            iterator.remove();
+        for (char letter : letters) {
+            alphabet.add(letter);
         }
 
-        siftDistinguishablePairs(otherPairs, distinguishablePairs, alphabet);
+        StateFactory factory = new StateFactory(alphabet, classes);
+        int[] stack = new int[nfa.getStateCount()];
+        Map<BitSet, State> mergedStates = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        List<State> states = new ArrayList<>();
 
-        return otherPairs; // after sifting, only nondistinguishable pairs are left in the other pairs set
-    }
+        BitSet entrySet = new BitSet(nfa.getStateCount());
+        nfa.addEpsilonClosure(nfa.getEntry(), entrySet, stack);
+        addMergedState(entrySet, nfa, mergedStates, sets, states, factory);
+
+        BitSet mergedDestinations = new BitSet(nfa.getStateCount());
 
-    // sift - просеивать
-    private static void siftDistinguishablePairs(Set<List<State>> otherPairs, Set<List<State>> distinguishablePairs, Set<Character> alphabet) throws FlawedLogicException {
-        Set<List<State>> newDistinguishablePairs = new HashSet<>();
+        for (int i = 0; i < sets.size(); i++) {
+            BitSet set = sets.get(i);
 
-        for (Iterator<List<State>> iterator = otherPairs.iterator(); iterator.hasNext(); ) {
-            List<State> pair = iterator.next();
+            for (char letter : letters) {
+                int charClass = classes.classOf(letter);
+                mergedDestinations.clear();
 
-            for (Character letter : alphabet) {
-                TreeSet<State> destinations1 = pair.get(0).getTransitions().get(letter);
-                TreeSet<State> destinations2 = pair.get(1).getTransitions().get(letter);
+                for (int state = set.nextSetBit(0); state >= 0; state = set.nextSetBit(state + 1)) {
+                    int[] destinations = nfa.getDestinations(state, charClass);
 
-                if ((destinations1 != null && destinations1.size() != 1) || (destinations2 != null && destinations2.size() != 1)) {
-                    throw new FlawedLogicException("Passed argument doesn't seem to be a DFA");
+                    if (destinations != null) {
+                        for (int destination : destinations) {
+                            nfa.addEpsilonClosure(destination, mergedDestinations, stack);
+                        }
+                    }
+                }
+
+                if (mergedDestinations.isEmpty()) {
+                    continue;
                 }
 
-                List<State> pairToCheck = new ArrayList<>();
-                pairToCheck.add(destinations1 == null ? null : destinations1.first());
-                pairToCheck.add(destinations2 == null ? null : destinations2.first());
+                State destination = mergedStates.get(mergedDestinations);
+
+                if (destination == null) { // the scratch set is only copied when it turns out to be new
+                    if (states.size() == maxStates) {
+                        return null;
+                    }
 
-                if (isDistinguishablePair(pairToCheck, distinguishablePairs)) {
-                    newDistinguishablePairs.add(pair);
-                    iterator.remove();
-                    break;
+                    destination = addMergedState((BitSet) mergedDestinations.clone(), nfa, mergedStates, sets, states, factory);
                 }
+
+                states.get(i).addTransition(letter, destination);
             }
         }
 
-        if (newDistinguishablePairs.size() > 0) {
-            siftDistinguishablePairs(otherPairs, newDistinguishablePairs, alphabet);
-        }
+        return states.get(0);
     }
 
-    private static boolean isDistinguishablePair(List<State> pair, Set<List<State>> distinguishablePairs) {
-        if (pair.get(0) == pair.get(1)) {
-            return false;
-        } else if (pair.get(0) == null || pair.get(1) == null) {
-            return true;
+    private static State addMergedState(BitSet set, IndexedNfa nfa, Map<BitSet, State> mergedStates, List<BitSet> sets, List<State> states, StateFactory factory) throws FlawedLogicException {
+        State mergedState = factory.newState();
+
+        if (nfa.containsExit(set)) {
+            mergedState.makeExit();
         }
 
-        for (List<State> distPair : distinguishablePairs) {
-            if (distPair.contains(pair.get(0)) && distPair.contains(pair.get(1))) {
-                return true;
-            }
+        for (int patternId : nfa.getAcceptedPatterns(set)) {
+            mergedState.makeExit(patternId);
         }
 
-        return false;
+        mergedStates.put(set, mergedState);
+        sets.add(set);
+        states.add(mergedState);
+
+        return mergedState;
     }
 
-    private static Set<Set<State>> groupPairs(Set<List<State>> pairs) {
-        Set<Set<State>> groups = new HashSet<>();
+    // breadth-first, so that the entry state comes first
+    private static List<State> getReachableStates(State state) throws FlawedLogicException {
+        List<State> reachableStates = new ArrayList<>();
+        Set<State> visited = new HashSet<>();
+        reachableStates.add(state);
+        visited.add(state);
 
-        for (List<State> pair : pairs) {
-            boolean separateGroup = true;
+        for (int i = 0; i < reachableStates.size(); i++) {
+            State reachableState = reachableStates.get(i);
 
-            for (Set<State> group : groups) {
-                if (group.contains(pair.get(0)) || group.contains(pair.get(1))) {
-                    group.addAll(pair);
-                    separateGroup = false;
-                    break;
-                }
+            if (!reachableState.isDeterministic()) {
+                throw new FlawedLogicException("Passed argument doesn't seem to be a DFA");
             }
 
-            if (separateGroup) {
-                groups.add(new TreeSet<>(pair));
+            for (int edge = 0; edge < reachableState.getEdgeCount(); edge++) {
+                if (visited.add(reachableState.getEdgeDestination(edge))) {
+                    reachableStates.add(reachableState.getEdgeDestination(edge));
+                }
             }
         }
 
-        return groups;
+        return reachableStates;
     }
 
-    private static boolean isInGroup(State state, Set<Set<State>> groups) {
-        for (Set<State> group : groups) {
-            if (group.contains(state)) {
-                return true;
-            }
+    private static Set<Set<State>> getEquivalenceClasses(List<State> reachableStates, char[] letters) {
+        Map<State, Integer> ids = new HashMap<>();
+
+        for (int i = 0; i < reachableStates.size(); i++) {
+            ids.put(reachableStates.get(i), i);
         }
 
-        return false;
-    }
+        int[] transitions = new int[reachableStates.size() * letters.length];
+        int[] labels = new int[reachableStates.size()];
+        Map<Set<Integer>, Integer> exitLabels = new HashMap<>(); // exit states accepting different patterns are distinguishable
 
-    private static Map<State, State> getBlankOldToNewMap(Set<Set<State>> equivalenceClasses) {
-        Map<State, State> oldToNewMap = new HashMap<>();
+        for (int i = 0; i < reachableStates.size(); i++) {
+            State state = reachableStates.get(i);
 
-        for (Set<State> eqClass : equivalenceClasses) {
-            for (State state : eqClass) {
-                oldToNewMap.put(state, null);
+            if (state.isExit()) {
+                if (!exitLabels.containsKey(state.getAcceptedPatterns())) {
+                    exitLabels.put(state.getAcceptedPatterns(), exitLabels.size() + 1);
+                }
+
+                labels[i] = exitLabels.get(state.getAcceptedPatterns());
+            }
+
+            for (int j = 0; j < letters.length; j++) {
+                State destination = state.getDestination(letters[j]);
+                transitions[i * letters.length + j] = destination == null ? -1 : ids.get(destination);
             }
         }
 
-        return oldToNewMap;
+        int[] blocks = HopcroftHelper.getBlocks(reachableStates.size(), letters.length, transitions, labels);
+        List<Set<State>> equivalenceClasses = new ArrayList<>();
+
+        for (int i = 0; i < reachableStates.size(); i++) {
+            if (blocks[i] == equivalenceClasses.size()) {
+                equivalenceClasses.add(new TreeSet<>());
+            }
+
+            equivalenceClasses.get(blocks[i]).add(reachableStates.get(i));
+        }
+
+        return new LinkedHashSet<>(equivalenceClasses);
     }
 
     private static State findEntry(Set<Set<State>> equivalenceClasses) throws FlawedLogicException {
@@ -342,45 +524,20 @@ public class DfaHelper {
         throw new FlawedLogicException("Couldn't find the entry state in any of the equivalence classes");
     }
 
-    private static State mergeStates(State oldState, Set<Set<State>> equivalenceClasses, Map<State, State> oldToNewMap, Set<Character> alphabet) throws FlawedLogicException {
-        State mergedState = new State(alphabet);
-        TreeSet<State> eqClass = getCorrespondingEqClass(oldState, equivalenceClasses);
+    private static State mergeStates(Set<State> eqClass, StateFactory factory) throws FlawedLogicException {
+        State mergedState = factory.newState();
 
         for (State state : eqClass) {
-            oldToNewMap.put(state, mergedState);
-
             if (state.isExit()) {
                 mergedState.makeExit();
             }
-        }
 
-        for (Character letter : alphabet) {
-            TreeSet<State> destinations = oldState.getTransitions().get(letter);
-
-            if (destinations != null) {
-                State destination = destinations.first();
-
-                if (oldToNewMap.containsKey(destination) && oldToNewMap.get(destination) != null) {
-                    destination = oldToNewMap.get(destination);
-                } else if (oldToNewMap.containsKey(destination)) {
-                    destination = mergeStates(destination, equivalenceClasses, oldToNewMap, alphabet);
-                }
-
-                mergedState.addTransition(letter, destination);
+            for (int patternId : state.getAcceptedPatterns()) {
+                mergedState.makeExit(patternId);
             }
         }
 
         return mergedState;
     }
 
-    private static TreeSet<State> getCorrespondingEqClass(State state, Set<Set<State>> equivalenceClasses) throws FlawedLogicException {
-        for (Set<State> eqClass : equivalenceClasses) {
-            if (eqClass.contains(state)) {
-                return new TreeSet<>(eqClass);
-            }
-        }
-
-        throw new FlawedLogicException("Couldn't find state #" + state.getId() + " in any of the equivalence classes");
-    }
-
 }
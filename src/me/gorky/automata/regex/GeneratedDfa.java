@@ -0,0 +1,23 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.CharClassMap;
+
+// the base of the matchers emitted by CodegenHelper: the DFA is turned into code, with a block per state
+// that ends in a switch over char classes, jumping straight to the blocks of the destinations
+public abstract class GeneratedDfa implements MatchEngine {
+
+    protected final CharClassMap classes;
+
+    private final CompiledDfa dfa;
+
+    protected GeneratedDfa(CompiledDfa dfa) {
+        this.classes = dfa.getClasses();
+        this.dfa = dfa;
+    }
+
+    // the table the code was generated from
+    public CompiledDfa getDfa() {
+        return dfa;
+    }
+
+}
@@ -0,0 +1,212 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.ByteSequence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongConsumer;
+
+// matches every line of a file against a pattern, in parallel: the file is memory-mapped a window at a time, every window is split
+// into chunks that end at line ends, and every chunk is a task of its own; the results of the chunks are collected in order
+// lines are matched without their terminators ("\n" or "\r\n"), a pattern compiled with CompileOptions.setUtf8 runs over the mapped
+// bytes directly, any other pattern gets every line decoded from UTF-8
+public class GrepHelper {
+
+    public static final int CHUNK_SIZE = 1 << 22; // bytes; chunks get extended to the end of the line they stop in
+
+    private static final int WINDOW_SIZE = 1 << 30; // bytes; a single mapping can't be larger than 2 GB anyway
+
+    public static long countMatches(Pattern pattern, Path file) throws IOException {
+        return countMatches(pattern, file, ForkJoinPool.commonPool());
+    }
+
+    public static long countMatches(Pattern pattern, Path file, ForkJoinPool pool) throws IOException {
+        final long[] count = {0};
+        scan(pattern, file, pool, false, new ChunkConsumer() {
+            @Override
+            public void accept(ChunkResult result) {
+                count[0] += result.count;
+            }
+        });
+
+        return count[0];
+    }
+
+    // the consumer gets the offset of the first byte of every matching line, in ascending order
+    public static void findMatches(Pattern pattern, Path file, LongConsumer consumer) throws IOException {
+        findMatches(pattern, file, ForkJoinPool.commonPool(), consumer);
+    }
+
+    public static void findMatches(Pattern pattern, Path file, ForkJoinPool pool, final LongConsumer consumer) throws IOException {
+        scan(pattern, file, pool, true, new ChunkConsumer() {
+            @Override
+            public void accept(ChunkResult result) {
+                for (int i = 0; i < result.count; i++) {
+                    consumer.accept(result.offsets[i]);
+                }
+            }
+        });
+    }
+
+    private static void scan(Pattern pattern, Path file, ForkJoinPool pool, boolean withOffsets, ChunkConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+
+            while (windowStart < size) {
+                long mappedSize = Math.min(WINDOW_SIZE, size - windowStart);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, mappedSize);
+                int windowSize = (int) mappedSize;
+
+                if (windowStart + mappedSize < size) { // the last line of the window may go on in the next one
+                    windowSize = lastLineEnd(window, windowSize);
+
+                    if (windowSize == 0) {
+                        throw new IOException("A line at offset " + windowStart + " is longer than " + WINDOW_SIZE + " bytes");
+                    }
+                }
+
+                // all the chunks of the window are forked at once, and joined in order
+                List<ForkJoinTask<ChunkResult>> tasks = new ArrayList<>();
+                ByteSequence bytes = new ByteSequence(window);
+
+                for (int chunkStart = 0; chunkStart < windowSize; ) {
+                    int chunkEnd = chunkStart + CHUNK_SIZE >= windowSize ? windowSize : nextLineStart(window, chunkStart + CHUNK_SIZE, windowSize);
+                    tasks.add(pool.submit(new ChunkTask(pattern, window, bytes, windowStart, chunkStart, chunkEnd, withOffsets)));
+                    chunkStart = chunkEnd;
+                }
+
+                for (ForkJoinTask<ChunkResult> task : tasks) {
+                    consumer.accept(task.join());
+                }
+
+                windowStart += windowSize;
+            }
+        }
+    }
+
+    // the offset right after the last '\n' of the first size bytes, 0 if there's none
+    private static int lastLineEnd(ByteBuffer buffer, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    // the offset right after the first '\n' at from or later, end if there's none
+    private static int nextLineStart(ByteBuffer buffer, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+
+        return end;
+    }
+
+    private interface ChunkConsumer {
+
+        void accept(ChunkResult result);
+
+    }
+
+    private static class ChunkResult {
+
+        private final long[] offsets; // null if only the count was asked for
+
+        private final int count;
+
+        private ChunkResult(long[] offsets, int count) {
+            this.offsets = offsets;
+            this.count = count;
+        }
+
+    }
+
+    private static class ChunkTask extends RecursiveTask<ChunkResult> {
+
+        private final Pattern pattern;
+
+        private final ByteBuffer window;
+
+        private final ByteSequence bytes;
+
+        private final long windowStart; // the offset of the window within the file
+
+        private final int from;
+
+        private final int to;
+
+        private final boolean withOffsets;
+
+        private ChunkTask(Pattern pattern, ByteBuffer window, ByteSequence bytes, long windowStart, int from, int to, boolean withOffsets) {
+            this.pattern = pattern;
+            this.window = window;
+            this.bytes = bytes;
+            this.windowStart = windowStart;
+            this.from = from;
+            this.to = to;
+            this.withOffsets = withOffsets;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            long[] offsets = withOffsets ? new long[16] : null;
+            int count = 0;
+            int lineStart = from;
+
+            while (lineStart < to) {
+                int lineEnd = lineStart;
+
+                while (lineEnd < to && window.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+
+                int next = lineEnd + 1; // past the '\n', or past the end of the chunk if the file doesn't end with one
+                int contentEnd = lineEnd > lineStart && window.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+                if (matches(lineStart, contentEnd)) {
+                    if (withOffsets) {
+                        if (count == offsets.length) {
+                            offsets = Arrays.copyOf(offsets, count * 2);
+                        }
+
+                        offsets[count] = windowStart + lineStart;
+                    }
+
+                    count++;
+                }
+
+                lineStart = next;
+            }
+
+            return new ChunkResult(offsets, count);
+        }
+
+        private boolean matches(int start, int end) {
+            if (pattern.isUtf8()) {
+                return pattern.matches(bytes.subSequence(start, end));
+            }
+
+            ByteBuffer line = window.duplicate();
+            line.limit(end).position(start);
+
+            return pattern.matches(line);
+        }
+
+    }
+
+}
@@ -0,0 +1,229 @@
+package me.gorky.automata.regex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Hopcroft's partition refinement over int-indexed DFA states, O(n·k·log n)
+public class HopcroftHelper {
+
+    // transitions: state * letterCount + letter -> destination, or -1 if there's no transition
+    // labels: states with different labels are distinguishable right away; label 0 is reserved for rejecting states
+    // returns the number of the equivalence class of every state, classes are numbered in order of their first state
+    public static int[] getBlocks(int stateCount, int letterCount, int[] transitions, int[] labels) {
+        int n = stateCount + 1; // the last state is a sink standing in for the missing transitions
+        int[] predecessorStarts = new int[letterCount * n + 1];
+        int[] predecessors = formPredecessors(stateCount, letterCount, transitions, predecessorStarts);
+
+        Partition partition = new Partition(n, labels);
+        int[] worklist = new int[n];
+        boolean[] inWorklist = new boolean[n];
+        int worklistSize = 0;
+        int largestBlock = 0;
+
+        for (int block = 1; block < partition.blockCount; block++) {
+            largestBlock = partition.size(block) > partition.size(largestBlock) ? block : largestBlock;
+        }
+
+        for (int block = 0; block < partition.blockCount; block++) { // every block but the largest one is a splitter
+            if (block != largestBlock) {
+                worklist[worklistSize++] = block;
+                inWorklist[block] = true;
+            }
+        }
+
+        int[] splitter = new int[n];
+
+        while (worklistSize > 0) {
+            int block = worklist[--worklistSize];
+            inWorklist[block] = false;
+
+            // the block may split while it's being used, so its current contents are copied
+            int splitterSize = partition.size(block);
+            System.arraycopy(partition.elements, partition.first[block], splitter, 0, splitterSize);
+
+            for (int letter = 0; letter < letterCount; letter++) {
+                for (int i = 0; i < splitterSize; i++) {
+                    int offset = letter * n + splitter[i];
+
+                    for (int j = predecessorStarts[offset]; j < predecessorStarts[offset + 1]; j++) {
+                        partition.mark(predecessors[j]);
+                    }
+                }
+
+                while (partition.touchedCount > 0) {
+                    int newBlock = partition.split(partition.touched[--partition.touchedCount]);
+
+                    // the new block is always the smaller half, so it's enough to add it regardless of whether the old one is waiting
+                    if (newBlock != -1 && !inWorklist[newBlock]) {
+                        worklist[worklistSize++] = newBlock;
+                        inWorklist[newBlock] = true;
+                    }
+                }
+            }
+        }
+
+        return numberBlocks(stateCount, partition.blockOf);
+    }
+
+    // for every letter and destination lists the states that lead there, the sink loops to itself
+    private static int[] formPredecessors(int stateCount, int letterCount, int[] transitions, int[] starts) {
+        int n = stateCount + 1;
+        int[] destinations = new int[letterCount * n];
+
+        for (int state = 0; state < n; state++) {
+            for (int letter = 0; letter < letterCount; letter++) {
+                int destination = state == stateCount ? -1 : transitions[state * letterCount + letter];
+                destination = destination == -1 ? stateCount : destination;
+                destinations[state * letterCount + letter] = destination;
+                starts[letter * n + destination + 1]++;
+            }
+        }
+
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+
+        int[] positions = Arrays.copyOf(starts, starts.length - 1);
+        int[] predecessors = new int[letterCount * n];
+
+        for (int state = 0; state < n; state++) {
+            for (int letter = 0; letter < letterCount; letter++) {
+                predecessors[positions[letter * n + destinations[state * letterCount + letter]]++] = state;
+            }
+        }
+
+        return predecessors;
+    }
+
+    private static int[] numberBlocks(int stateCount, int[] blockOf) {
+        int[] numbers = new int[blockOf.length];
+        Arrays.fill(numbers, -1);
+        int[] blocks = new int[stateCount];
+        int blockCount = 0;
+
+        for (int state = 0; state < stateCount; state++) {
+            if (numbers[blockOf[state]] == -1) {
+                numbers[blockOf[state]] = blockCount++;
+            }
+
+            blocks[state] = numbers[blockOf[state]];
+        }
+
+        return blocks;
+    }
+
+    // a refinable partition: every block occupies a contiguous segment of elements, marked elements are gathered at its start
+    private static class Partition {
+
+        private final int[] elements;
+
+        private final int[] location;
+
+        private final int[] blockOf;
+
+        private final int[] first;
+
+        private final int[] end;
+
+        private final int[] marked;
+
+        private final int[] touched;
+
+        private int touchedCount = 0;
+
+        private int blockCount = 0;
+
+        private Partition(int n, int[] labels) {
+            elements = new int[n];
+            location = new int[n];
+            blockOf = new int[n];
+            first = new int[n];
+            end = new int[n];
+            marked = new int[n];
+            touched = new int[n];
+
+            Map<Integer, Integer> labelBlocks = new HashMap<>();
+            int[] sizes = new int[n];
+
+            for (int state = 0; state < n; state++) {
+                int label = state == n - 1 ? 0 : labels[state];
+
+                if (!labelBlocks.containsKey(label)) {
+                    labelBlocks.put(label, blockCount++);
+                }
+
+                blockOf[state] = labelBlocks.get(label);
+                sizes[blockOf[state]]++;
+            }
+
+            for (int block = 1; block < blockCount; block++) {
+                first[block] = first[block - 1] + sizes[block - 1];
+            }
+
+            for (int block = 0; block < blockCount; block++) {
+                end[block] = first[block];
+            }
+
+            for (int state = 0; state < n; state++) {
+                int block = blockOf[state];
+                elements[end[block]] = state;
+                location[state] = end[block]++;
+            }
+        }
+
+        private int size(int block) {
+            return end[block] - first[block];
+        }
+
+        private void mark(int element) {
+            int block = blockOf[element];
+            int i = location[element];
+            int j = first[block] + marked[block];
+
+            if (i < j) { // already marked
+                return;
+            }
+
+            elements[i] = elements[j];
+            location[elements[i]] = i;
+            elements[j] = element;
+            location[element] = j;
+
+            if (marked[block]++ == 0) {
+                touched[touchedCount++] = block;
+            }
+        }
+
+        // separates the marked elements from the rest, returns the new block or -1 if the block stayed intact
+        private int split(int block) {
+            int markedCount = marked[block];
+            marked[block] = 0;
+
+            if (markedCount == size(block)) {
+                return -1;
+            }
+
+            int newBlock = blockCount++;
+            int middle = first[block] + markedCount;
+
+            if (markedCount <= size(block) - markedCount) {
+                first[newBlock] = first[block];
+                end[newBlock] = middle;
+                first[block] = middle;
+            } else {
+                first[newBlock] = middle;
+                end[newBlock] = end[block];
+                end[block] = middle;
+            }
+
+            for (int i = first[newBlock]; i < end[newBlock]; i++) {
+                blockOf[elements[i]] = newBlock;
+            }
+
+            return newBlock;
+        }
+
+    }
+
+}
@@ -0,0 +1,224 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.CharClassMap;
+import me.gorky.automata.regex.structures.IndexedNfa;
+import me.gorky.automata.regex.structures.State;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// a DFA that is determinized on the fly: a state is only created when some input actually leads to it
+// the states are kept in a cache of limited size, which is flushed entirely once it's full
+// every thread gets a cache of its own, so that threads sharing a pattern don't wait for each other; the capacity is per cache
+public class LazyDfa implements MatchEngine {
+
+    public static final long DEFAULT_CACHE_CAPACITY = 1 << 21; // bytes
+
+    private static final int UNKNOWN_STATE = -2;
+
+    private static final int MIN_CACHED_STATES = 2; // the current state and the one being added
+
+    private static final int INITIAL_CACHED_STATES = 16;
+
+    private final IndexedNfa nfa;
+
+    private final CharClassMap classes;
+
+    private final int classCount;
+
+    private final int maxCachedStates;
+
+    private final BitSet entrySet; // never modified after the constructor, so the caches can share it
+
+    private final AtomicInteger flushCount = new AtomicInteger();
+
+    // the caches don't refer back to the pattern, nor to this ThreadLocal, so that the entries of a discarded pattern go stale in
+    // the threads' maps instead of keeping the pattern reachable from every thread that ever matched it
+    private final ThreadLocal<Cache> caches = new ThreadLocal<Cache>() {
+        @Override
+        protected Cache initialValue() {
+            return new Cache(nfa, entrySet, maxCachedStates, flushCount);
+        }
+    };
+
+    public LazyDfa(State nfaEntry) {
+        this(nfaEntry, DEFAULT_CACHE_CAPACITY);
+    }
+
+    public LazyDfa(State nfaEntry, long cacheCapacity) {
+        nfa = new IndexedNfa(nfaEntry);
+        classes = nfa.getClasses();
+        classCount = classes.getClassCount();
+        maxCachedStates = (int) Math.min(Integer.MAX_VALUE / classCount, Math.max(MIN_CACHED_STATES, cacheCapacity / estimateStateSize()));
+
+        entrySet = new BitSet(nfa.getStateCount());
+        nfa.addEpsilonClosure(nfa.getEntry(), entrySet, new int[nfa.getStateCount()]);
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        return caches.get().matches(input);
+    }
+
+    // in the cache of the calling thread
+    public int getCachedStateCount() {
+        return caches.get().stateCount;
+    }
+
+    // in the caches of all the threads
+    public int getFlushCount() {
+        return flushCount.get();
+    }
+
+    public int getMaxCachedStates() {
+        return maxCachedStates;
+    }
+
+    // a row of transitions, a bitset of NFA states and a hash map entry
+    private long estimateStateSize() {
+        return classCount * 4L + (nfa.getStateCount() / 64 + 1) * 8L + 96;
+    }
+
+    // the states determinized so far by a single thread
+    private static class Cache {
+
+        private final IndexedNfa nfa;
+
+        private final CharClassMap classes;
+
+        private final int classCount;
+
+        private final int maxCachedStates;
+
+        private final BitSet entrySet;
+
+        private final AtomicInteger flushCount;
+
+        private final Map<BitSet, Integer> stateIds = new HashMap<>();
+
+        private BitSet[] sets;
+
+        private int[] transitions; // state * classCount + class -> state, UNKNOWN_STATE if it's yet to be determinized
+
+        private boolean[] accepting;
+
+        private int stateCount = 0;
+
+        private int entry = UNKNOWN_STATE;
+
+        private final int[] stack;
+
+        private final BitSet scratch;
+
+        private Cache(IndexedNfa nfa, BitSet entrySet, int maxCachedStates, AtomicInteger flushCount) {
+            this.nfa = nfa;
+            this.classes = nfa.getClasses();
+            this.classCount = classes.getClassCount();
+            this.maxCachedStates = maxCachedStates;
+            this.entrySet = entrySet;
+            this.flushCount = flushCount;
+            stack = new int[nfa.getStateCount()];
+            scratch = new BitSet(nfa.getStateCount());
+
+            int initialStates = Math.min(INITIAL_CACHED_STATES, maxCachedStates);
+            sets = new BitSet[initialStates];
+            transitions = new int[initialStates * classCount];
+            accepting = new boolean[initialStates];
+        }
+
+        private boolean matches(CharSequence input) {
+            if (entry == UNKNOWN_STATE) {
+                if (stateCount == maxCachedStates) {
+                    flush();
+                }
+
+                entry = addState(entrySet);
+            }
+
+            int state = entry;
+
+            for (int i = 0, length = input.length(); i < length; i++) {
+                int charClass = classes.classOf(input.charAt(i));
+                int next = transitions[state * classCount + charClass];
+
+                if (next == UNKNOWN_STATE) {
+                    next = determinize(state, charClass);
+                }
+
+                if (next == CompiledDfa.DEAD_STATE) {
+                    return false;
+                }
+
+                state = next;
+            }
+
+            return accepting[state];
+        }
+
+        private int determinize(int state, int charClass) {
+            scratch.clear();
+            BitSet set = sets[state];
+
+            for (int nfaState = set.nextSetBit(0); nfaState >= 0; nfaState = set.nextSetBit(nfaState + 1)) {
+                int[] destinations = nfa.getDestinations(nfaState, charClass);
+
+                if (destinations != null) {
+                    for (int destination : destinations) {
+                        nfa.addEpsilonClosure(destination, scratch, stack);
+                    }
+                }
+            }
+
+            int next = CompiledDfa.DEAD_STATE;
+
+            if (!scratch.isEmpty()) {
+                Integer id = stateIds.get(scratch);
+
+                if (id != null) {
+                    next = id;
+                } else {
+                    if (stateCount == maxCachedStates) { // the current state survives the flush, since the transition is written into it
+                        flush();
+                        state = addState(set);
+                    }
+
+                    next = addState((BitSet) scratch.clone());
+                }
+            }
+
+            transitions[state * classCount + charClass] = next;
+
+            return next;
+        }
+
+        private int addState(BitSet set) {
+            if (stateCount == sets.length) {
+                int capacity = (int) Math.min(maxCachedStates, sets.length * 2L);
+                sets = Arrays.copyOf(sets, capacity);
+                transitions = Arrays.copyOf(transitions, capacity * classCount);
+                accepting = Arrays.copyOf(accepting, capacity);
+            }
+
+            int id = stateCount++;
+            sets[id] = set;
+            accepting[id] = nfa.containsExit(set);
+            Arrays.fill(transitions, id * classCount, (id + 1) * classCount, UNKNOWN_STATE);
+            stateIds.put(set, id);
+
+            return id;
+        }
+
+        private void flush() {
+            stateIds.clear();
+            Arrays.fill(sets, 0, stateCount, null);
+            stateCount = 0;
+            entry = UNKNOWN_STATE;
+            flushCount.incrementAndGet();
+        }
+
+    }
+
+}
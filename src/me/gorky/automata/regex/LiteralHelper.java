@@ -0,0 +1,301 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.structures.Node;
+import me.gorky.automata.regex.structures.RequiredLiterals;
+import me.gorky.automata.regex.structures.Symbol;
+
+import java.util.*;
+
+// finds the literals every string matched by a regex has to start with, end with and contain
+// every node gets the set of strings it matches exactly while that set is small, and sets of required prefixes,
+// suffixes and factors once it isn't; a set containing "" tells nothing, since every string satisfies it
+public class LiteralHelper {
+
+    private static final int MAX_SET_SIZE = 32; // more alternatives than this aren't worth scanning for
+
+    private static final int MAX_LITERAL_LENGTH = 64; // longer literals get cut, which keeps them required
+
+    private static final int MAX_CLASS_SIZE = 4; // classes of up to this many chars are treated as alternatives, like [ab] as a|b
+
+    private static final Set<String> UNKNOWN = Collections.singleton("");
+
+    public static RequiredLiterals analyze(Node root) throws FlawedLogicException {
+        if (root.getSymbol() == null) {
+            return new RequiredLiterals(new String[0], new String[0], new String[0]);
+        }
+
+        // iterative post-order traversal, since trees of long regexes are too deep for recursion
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Literals> results = new ArrayDeque<>();
+        ArrayList<Node> postOrder = new ArrayList<>();
+        nodes.push(root);
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            postOrder.add(node);
+
+            for (Node child : node.getChildren()) {
+                nodes.push(child);
+            }
+        }
+
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Node node = postOrder.get(i);
+
+            if (node.getChildren().isEmpty()) {
+                results.push(analyzeLeaf(node.getSymbol().getRanges()));
+                continue;
+            }
+
+            Symbol operator = node.getSymbol();
+
+            if (node.getChildren().size() != operator.getOperandsCount()) {
+                throw new FlawedLogicException("Operator '" + operator + "' has incorrect amount of operands (" + node.getChildren().size() + ")");
+            }
+
+            if (operator.toChar() == '*') {
+                results.pop();
+                results.push(new Literals(null, UNKNOWN, UNKNOWN, UNKNOWN));
+                continue;
+            }
+
+            if (operator.toChar() == '+') {
+                results.push(repeat(results.pop(), 1, Symbol.UNBOUNDED));
+                continue;
+            }
+
+            if (operator.toChar() == '?') { // the same as an alternative to the empty string
+                results.push(alternate(results.pop(), new Literals(UNKNOWN)));
+                continue;
+            }
+
+            if (operator.isRepetition()) {
+                results.push(repeat(results.pop(), operator.getMinCount(), operator.getMaxCount()));
+                continue;
+            }
+
+            Literals right = results.pop();
+            Literals left = results.pop();
+
+            if (operator.toChar() == '|') {
+                results.push(alternate(left, right));
+            } else if (operator.toChar() == Symbol.CONCATENATION_SYMBOL) {
+                results.push(concatenate(left, right));
+            } else {
+                throw new FlawedLogicException("Intermediary node (symbol '" + operator + "') wasn't recognized as operator");
+            }
+        }
+
+        Literals literals = results.pop();
+
+        return new RequiredLiterals(toArray(literals.prefixes), toArray(literals.suffixes), toArray(literals.factors));
+    }
+
+    private static Literals analyzeLeaf(char[] ranges) {
+        int size = 0;
+
+        for (int i = 0; i < ranges.length; i += 2) {
+            size += ranges[i + 1] - ranges[i] + 1;
+        }
+
+        if (size > MAX_CLASS_SIZE) {
+            return new Literals(null, UNKNOWN, UNKNOWN, UNKNOWN);
+        }
+
+        Set<String> exact = new TreeSet<>();
+
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (int ch = ranges[i]; ch <= ranges[i + 1]; ch++) {
+                exact.add(String.valueOf((char) ch));
+            }
+        }
+
+        return new Literals(exact);
+    }
+
+    private static Literals alternate(Literals left, Literals right) {
+        if (left.exact != null && right.exact != null && left.exact.size() + right.exact.size() <= MAX_SET_SIZE) {
+            return new Literals(union(left.exact, right.exact));
+        }
+
+        Set<String> factors = union(left.factors, right.factors);
+
+        return new Literals(null, shorten(union(left.prefixes, right.prefixes), true), shorten(union(left.suffixes, right.suffixes), false),
+                factors.size() > MAX_SET_SIZE ? UNKNOWN : factors);
+    }
+
+    private static Literals concatenate(Literals left, Literals right) {
+        if (left.exact != null && right.exact != null && getMaxLength(left.exact) + getMaxLength(right.exact) <= MAX_LITERAL_LENGTH) {
+            Set<String> exact = cross(left.exact, right.exact, true);
+
+            if (exact != null) {
+                return new Literals(exact);
+            }
+        }
+
+        Set<String> prefixes = left.prefixes;
+        Set<String> suffixes = right.suffixes;
+
+        if (left.exact != null) { // the exact strings can be followed by the right prefixes, but they are prefixes on their own as well
+            Set<String> crossed = cross(left.exact, right.prefixes, true);
+            prefixes = crossed != null ? crossed : cut(left.exact, true);
+        }
+
+        if (right.exact != null) {
+            Set<String> crossed = cross(left.suffixes, right.exact, false);
+            suffixes = crossed != null ? crossed : cut(right.exact, false);
+        }
+
+        // a left suffix followed by a right prefix spans the boundary, and its part that fits is required too
+        Set<String> factors = best(best(left.factors, right.factors), cross(left.suffixes, right.prefixes, true));
+
+        return new Literals(null, prefixes, suffixes, factors);
+    }
+
+    // x{min,max}: x^min is concatenated for as long as its exact strings are known, and whatever follows it starts with x again,
+    // so the prefixes, suffixes and factors of that part of x^min hold for any number of copies from then on
+    private static Literals repeat(Literals literals, int minCount, int maxCount) {
+        if (minCount == 0) {
+            return maxCount == 0 ? new Literals(UNKNOWN) : new Literals(null, UNKNOWN, UNKNOWN, UNKNOWN);
+        }
+
+        Literals power = literals;
+        int count = 1;
+
+        while (count < minCount && power.exact != null) {
+            power = concatenate(power, literals);
+            count++;
+        }
+
+        if (count == minCount && maxCount == minCount) {
+            return power;
+        }
+
+        return new Literals(null, power.prefixes, power.suffixes, power.factors);
+    }
+
+    // every first string followed by every second one, cut to MAX_LITERAL_LENGTH from the start or the end; null if there are too many
+    private static Set<String> cross(Set<String> first, Set<String> second, boolean keepStart) {
+        if ((long) first.size() * second.size() > MAX_SET_SIZE) {
+            return null;
+        }
+
+        Set<String> result = new TreeSet<>();
+
+        for (String s1 : first) {
+            for (String s2 : second) {
+                result.add(cut(s1 + s2, keepStart));
+            }
+        }
+
+        return result;
+    }
+
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        Set<String> result = new TreeSet<>(first);
+        result.addAll(second);
+        return result;
+    }
+
+    private static Set<String> cut(Set<String> strings, boolean keepStart) {
+        Set<String> result = new TreeSet<>();
+
+        for (String s : strings) {
+            result.add(cut(s, keepStart));
+        }
+
+        return result;
+    }
+
+    private static String cut(String s, boolean keepStart) {
+        if (s.length() <= MAX_LITERAL_LENGTH) {
+            return s;
+        }
+
+        return keepStart ? s.substring(0, MAX_LITERAL_LENGTH) : s.substring(s.length() - MAX_LITERAL_LENGTH);
+    }
+
+    // prefixes (or suffixes) cut shorter and shorter until there are few enough of them, since shorter ones merge
+    private static Set<String> shorten(Set<String> strings, boolean keepStart) {
+        int length = getMaxLength(strings);
+
+        while (strings.size() > MAX_SET_SIZE) {
+            length--;
+            Set<String> shortened = new TreeSet<>();
+
+            for (String s : strings) {
+                shortened.add(s.length() <= length ? s : keepStart ? s.substring(0, length) : s.substring(s.length() - length));
+            }
+
+            strings = shortened;
+        }
+
+        return strings;
+    }
+
+    // the set that's more selective: its shortest string is longer, or it has fewer strings; null stands for no set
+    private static Set<String> best(Set<String> first, Set<String> second) {
+        if (first == null || second == null) {
+            return first == null ? second : first;
+        }
+
+        int length1 = getMinLength(first);
+        int length2 = getMinLength(second);
+
+        if (length1 != length2) {
+            return length1 > length2 ? first : second;
+        }
+
+        return first.size() <= second.size() ? first : second;
+    }
+
+    private static int getMinLength(Set<String> strings) {
+        int length = Integer.MAX_VALUE;
+
+        for (String s : strings) {
+            length = Math.min(length, s.length());
+        }
+
+        return length;
+    }
+
+    private static int getMaxLength(Set<String> strings) {
+        int length = 0;
+
+        for (String s : strings) {
+            length = Math.max(length, s.length());
+        }
+
+        return length;
+    }
+
+    private static String[] toArray(Set<String> strings) {
+        return strings.contains("") ? new String[0] : strings.toArray(new String[0]);
+    }
+
+    // what's known about the strings a node matches
+    private static class Literals {
+
+        private final Set<String> exact; // all of them, null if there are too many
+
+        private final Set<String> prefixes;
+
+        private final Set<String> suffixes;
+
+        private final Set<String> factors;
+
+        private Literals(Set<String> exact) {
+            this(exact, exact, exact, exact);
+        }
+
+        private Literals(Set<String> exact, Set<String> prefixes, Set<String> suffixes, Set<String> factors) {
+            this.exact = exact;
+            this.prefixes = prefixes;
+            this.suffixes = suffixes;
+            this.factors = factors;
+        }
+
+    }
+
+}
@@ -5,16 +5,30 @@ import me.gorky.automata.regex.structures.Node;
 import me.gorky.automata.regex.structures.State;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Set;
+import java.util.function.LongConsumer;
 
 /**
  * ((дек|велик)аа*н *)*
+ *
+ * with no arguments, prints the automata of every regex entered and checks strings against them;
+ * with a regex and a file ([-c] regex file), prints the byte offsets of the file's lines that match the regex, or their count with -c
  */
 
 public class Main {
 
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(grep(args));
+        }
+
         BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 
         while (true) {
@@ -49,6 +63,8 @@ public class Main {
                 System.out.println("# minimized DFA adjacency list (" + legend + "):");
                 AutomatonHelper.printAutomaton(entry);
 
+                CompiledDfa dfa = DfaHelper.compile(entry);
+
                 while (true) {
                     System.out.print("Enter a string to be checked ('s' to stop): ");
                     input = br.readLine();
@@ -57,7 +73,7 @@ public class Main {
                         break;
                     }
 
-                    System.out.println("# " + DfaHelper.checkString(input, entry));
+                    System.out.println("# " + dfa.matches(input));
                 }
 
                 System.out.println("");
@@ -71,4 +87,50 @@ public class Main {
         }
     }
 
+    // returns the exit code: 0 if some line matched, 1 if none did, 2 on errors, as grep does
+    private static int grep(String[] args) {
+        boolean isCounting = args[0].equals("-c");
+        int argsStart = isCounting ? 1 : 0;
+
+        if (args.length - argsStart != 2) {
+            System.err.println("Usage: [-c] regex file");
+            return 2;
+        }
+
+        try {
+            CompileOptions options = new CompileOptions();
+            options.setUtf8(true); // the lines are matched as the bytes they are in the file
+            Pattern pattern = Pattern.compile(args[argsStart], options);
+            Path file = Paths.get(args[argsStart + 1]);
+
+            if (isCounting) {
+                long count = GrepHelper.countMatches(pattern, file);
+                System.out.println(count);
+                return count > 0 ? 0 : 1;
+            }
+
+            final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+            final boolean[] isFound = {false};
+            GrepHelper.findMatches(pattern, file, new LongConsumer() {
+                @Override
+                public void accept(long offset) {
+                    out.println(offset);
+                    isFound[0] = true;
+                }
+            });
+            out.flush();
+
+            return isFound[0] ? 0 : 1;
+
+        } catch (BadInputException ex) {
+            System.err.println(ex.getMessage());
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        return 2;
+    }
+
 }
@@ -0,0 +1,110 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.CharClassMap;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+// a compiled DFA matched right off a buffer (usually a memory-mapped file) written by SerializationHelper
+// only absolute reads are made, so a single instance can be shared by many threads
+// matching stops early at the states every char loops back to, the dead and accepting-forever states of a minimized DFA;
+// unlike CompiledDfa it doesn't look for the sinks made of several states, since that needs the predecessors of the whole table in memory
+public class MappedDfa implements MatchEngine {
+
+    private final CharClassMap classes;
+
+    private final int classCount;
+
+    private final int entry;
+
+    private final int stateCount;
+
+    private final IntBuffer transitions; // state * classCount + class -> state, or DEAD_STATE
+
+    private final ByteBuffer accepting; // a bit per state
+
+    private final boolean[] selfLooping; // found by SerializationHelper.wrap while checking the table
+
+    private final boolean hasSelfLoopingStates; // if not, matching doesn't check for them at every char
+
+    MappedDfa(CharClassMap classes, int entry, int stateCount, IntBuffer transitions, ByteBuffer accepting, boolean[] selfLooping) {
+        this.classes = classes;
+        this.classCount = classes.getClassCount();
+        this.entry = entry;
+        this.stateCount = stateCount;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.selfLooping = selfLooping;
+        boolean hasSelfLoopingStates = false;
+
+        for (boolean isSelfLooping : selfLooping) {
+            hasSelfLoopingStates |= isSelfLooping;
+        }
+
+        this.hasSelfLoopingStates = hasSelfLoopingStates;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        int state = entry;
+        int length = input.length();
+
+        if (!hasSelfLoopingStates) {
+            for (int i = 0; i < length; i++) {
+                state = transitions.get(state * classCount + classes.classOf(input.charAt(i)));
+
+                if (state == CompiledDfa.DEAD_STATE) {
+                    return false;
+                }
+            }
+
+            return isAccepting(state);
+        }
+
+        for (int i = 0; i < length && !selfLooping[state]; i++) {
+            state = transitions.get(state * classCount + classes.classOf(input.charAt(i)));
+
+            if (state == CompiledDfa.DEAD_STATE) {
+                return false;
+            }
+        }
+
+        return isAccepting(state);
+    }
+
+    public int getTransition(int state, int charClass) {
+        return transitions.get(state * classCount + charClass);
+    }
+
+    public int getEntry() {
+        return entry;
+    }
+
+    public boolean isAccepting(int state) {
+        return (accepting.get(state >>> 3) & 1 << (state & 7)) != 0;
+    }
+
+    // whether no input can lead from the state to an accepting one, as far as self-loops tell; true for DEAD_STATE as well
+    public boolean isDead(int state) {
+        return state == CompiledDfa.DEAD_STATE || selfLooping[state] && !isAccepting(state);
+    }
+
+    // whether every input leads from the state to an accepting one, as far as self-loops tell
+    public boolean isAcceptingForever(int state) {
+        return state != CompiledDfa.DEAD_STATE && selfLooping[state] && isAccepting(state);
+    }
+
+    // whether the state is either, so that matching can stop in it
+    public boolean isDecided(int state) {
+        return state == CompiledDfa.DEAD_STATE || selfLooping[state];
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public CharClassMap getClasses() {
+        return classes;
+    }
+
+}
@@ -0,0 +1,8 @@
+package me.gorky.automata.regex;
+
+// anything that can tell whether an input string as a whole belongs to the language of a regex
+public interface MatchEngine {
+
+    boolean matches(CharSequence input);
+
+}
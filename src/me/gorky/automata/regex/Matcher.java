@@ -0,0 +1,108 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.ByteSequence;
+
+// runs a DFA over input that comes in chunks: only the current state is kept, so streams of any length are checked in constant memory
+// once the outcome can't change (see isDead and isAcceptingForever), the chunks fed are no longer read
+// not thread-safe, but any number of matchers can share a single DFA
+public class Matcher {
+
+    private final CompiledDfa dfa;
+
+    private final boolean isUtf8; // if so, chars are only taken from a ByteSequence, since a chunk may end in the middle of a code point
+
+    private int state;
+
+    public Matcher(CompiledDfa dfa) {
+        this(dfa, false);
+    }
+
+    public Matcher(CompiledDfa dfa, boolean isUtf8) {
+        this.dfa = dfa;
+        this.isUtf8 = isUtf8;
+        this.state = dfa.getEntry();
+    }
+
+    public Matcher feed(CharSequence chunk) {
+        return feed(chunk, 0, chunk.length());
+    }
+
+    public Matcher feed(CharSequence chunk, int offset, int length) {
+        checkBounds(offset, length, chunk.length());
+
+        if (isUtf8 && !(chunk instanceof ByteSequence)) {
+            throw new IllegalStateException("The pattern was compiled for UTF-8, so it's fed bytes or a ByteSequence rather than chars");
+        }
+
+        for (int i = offset, end = offset + length; i < end && !dfa.isDecided(state); i++) {
+            state = dfa.step(state, chunk.charAt(i));
+        }
+
+        return this;
+    }
+
+    public Matcher feed(char[] chunk, int offset, int length) {
+        checkBounds(offset, length, chunk.length);
+
+        if (isUtf8) {
+            throw new IllegalStateException("The pattern was compiled for UTF-8, so it's fed bytes or a ByteSequence rather than chars");
+        }
+
+        for (int i = offset, end = offset + length; i < end && !dfa.isDecided(state); i++) {
+            state = dfa.step(state, chunk[i]);
+        }
+
+        return this;
+    }
+
+    // bytes as chars 0-255, for the patterns compiled with CompileOptions.setUtf8; a code point may be split between chunks
+    public Matcher feed(byte[] chunk, int offset, int length) {
+        checkBounds(offset, length, chunk.length);
+
+        for (int i = offset, end = offset + length; i < end && !dfa.isDecided(state); i++) {
+            state = dfa.step(state, (char) (chunk[i] & 0xFF));
+        }
+
+        return this;
+    }
+
+    private static void checkBounds(int offset, int length, int size) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + size);
+        }
+    }
+
+    // whether everything fed so far is matched
+    public boolean isAccepting() {
+        return state != CompiledDfa.DEAD_STATE && dfa.isAccepting(state);
+    }
+
+    // whether nothing fed from now on can make the input matched, so that the rest of the stream can be skipped
+    public boolean isDead() {
+        return dfa.isDead(state);
+    }
+
+    // whether anything fed from now on keeps the input matched (by the same patterns), so that the rest of the stream can be skipped
+    public boolean isAcceptingForever() {
+        return dfa.isAcceptingForever(state);
+    }
+
+    // for pattern sets: the ids of the patterns matching everything fed so far, in ascending order
+    public int[] getAcceptedPatterns() {
+        return state == CompiledDfa.DEAD_STATE ? new int[0] : dfa.getAcceptedPatterns(state).clone();
+    }
+
+    // back to the state nothing has been fed in, so that the matcher can be reused for another stream
+    public void reset() {
+        state = dfa.getEntry();
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public CompiledDfa getDfa() {
+        return dfa;
+    }
+
+}
@@ -0,0 +1,75 @@
+package me.gorky.automata.regex;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// counts what another engine does; the counters can be updated by many threads at once
+public class MeteredEngine implements MatchEngine {
+
+    private final MatchEngine engine;
+
+    private final CompiledDfa dfa; // if the engine is a table, it's run here so that the chars it actually reads are counted
+
+    private final Prefilter prefilter; // the pattern's, so that the inputs it rejects count as not scanned at all
+
+    private final LongAdder scannedChars = new LongAdder();
+
+    private final LongAdder matchedInputs = new LongAdder();
+
+    private final LongAdder rejectedInputs = new LongAdder();
+
+    public MeteredEngine(MatchEngine engine) {
+        MatchEngine unwrapped = engine instanceof Pattern ? ((Pattern) engine).getMatchEngine() : engine;
+        this.engine = engine;
+        this.dfa = unwrapped instanceof CompiledDfa ? (CompiledDfa) unwrapped : null;
+        this.prefilter = engine instanceof Pattern ? ((Pattern) engine).getPrefilter() : null;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        boolean matched;
+
+        if (prefilter != null && !prefilter.mayMatch(input)) {
+            matched = false;
+        } else if (dfa != null) {
+            int state = dfa.getEntry();
+            int i = 0;
+
+            for (int length = input.length(); i < length && !dfa.isDecided(state); i++) {
+                state = dfa.step(state, input.charAt(i));
+            }
+
+            scannedChars.add(i);
+            matched = state != CompiledDfa.DEAD_STATE && dfa.isAccepting(state);
+        } else { // other engines may stop early too, but they don't tell where
+            matched = engine.matches(input);
+            scannedChars.add(input.length());
+        }
+
+        (matched ? matchedInputs : rejectedInputs).increment();
+
+        return matched;
+    }
+
+    public MatchEngine getEngine() {
+        return engine;
+    }
+
+    public long getScannedChars() {
+        return scannedChars.sum();
+    }
+
+    public long getMatchedInputs() {
+        return matchedInputs.sum();
+    }
+
+    public long getRejectedInputs() {
+        return rejectedInputs.sum();
+    }
+
+    public void reset() {
+        scannedChars.reset();
+        matchedInputs.reset();
+        rejectedInputs.reset();
+    }
+
+}
@@ -1,59 +1,125 @@
 package me.gorky.automata.regex;
 
 import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.structures.CharClassMap;
 import me.gorky.automata.regex.structures.Node;
 import me.gorky.automata.regex.structures.State;
+import me.gorky.automata.regex.structures.StateFactory;
 import me.gorky.automata.regex.structures.Symbol;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class NfaHelper {
 
     public static State buildNfa(Node root) throws FlawedLogicException {
-        State.setCounter(0);
-        Set<Character> alphabet = formAlphabet(root);
+        StateFactory factory = createFactory(Collections.singletonList(root), true);
 
         if (root.getSymbol() == null) {
-            State s = new State(alphabet);
+            State s = factory.newState();
             s.makeEntry();
             s.makeExit();
             return s;
         }
 
-        State entry = new State(alphabet);
+        State entry = factory.newState();
         entry.makeEntry();
-        State exit = new State(alphabet);
+        State exit = factory.newState();
         exit.makeExit();
-        connectStates(entry, exit, root, alphabet);
+        connectStates(entry, exit, root, factory);
 
         return entry;
     }
 
-    private static Set<Character> formAlphabet(Node root) {
-        Set<Character> alphabet = new HashSet<>();
-        formAlphabet(root, alphabet);
-        alphabet.add(null); // null will be considered ε*
+    // the union of several patterns: every pattern gets an exit state of its own, tagged with the pattern's index
+    public static State buildNfa(List<Node> roots) throws FlawedLogicException {
+        StateFactory factory = createFactory(roots, true);
+        State entry = factory.newState();
+        entry.makeEntry();
 
-        return alphabet;
+        for (int i = 0; i < roots.size(); i++) {
+            State start = factory.newState();
+            State exit = factory.newState();
+            exit.makeExit(i);
+            entry.addTransition(null, start);
+
+            if (roots.get(i).getSymbol() == null) {
+                start.addTransition(null, exit);
+            } else {
+                connectStates(start, exit, roots.get(i), factory);
+            }
+        }
+
+        return entry;
     }
 
-    private static void formAlphabet(Node node, Set<Character> alphabet) {
-        if (node.getChildren().isEmpty()) { // means it's a leaf
-            if (node.getSymbol() != null) {
-                alphabet.add(node.getSymbol().toChar());
+    // the char space is split into classes that no operand can tell apart, and the letters of the alphabet are the classes' representatives,
+    // so that [a-z] makes a single transition rather than 26 of them
+    static StateFactory createFactory(List<Node> roots, boolean isEpsilonAllowed) throws FlawedLogicException {
+        List<char[]> rangeSets = new ArrayList<>();
+
+        for (Node root : roots) {
+            collectRanges(root, rangeSets);
+        }
+
+        CharClassMap classes = CharClassMap.fromRanges(rangeSets);
+        Set<Character> alphabet = new HashSet<>();
+
+        for (char[] ranges : rangeSets) {
+            for (int charClass : classes.getClasses(ranges)) {
+                alphabet.add(classes.getRepresentative(charClass));
             }
-        } else {
-            for (Node child : node.getChildren()) {
-                formAlphabet(child, alphabet);
+        }
+
+        if (isEpsilonAllowed) {
+            alphabet.add(null); // null will be considered ε*
+        }
+
+        return new StateFactory(alphabet, classes);
+    }
+
+    // the ranges of every operand; iterative, since trees of long regexes are too deep for recursion
+    private static void collectRanges(Node root, List<char[]> rangeSets) throws FlawedLogicException {
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        nodes.push(root);
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+
+            if (node.getChildren().isEmpty()) { // means it's a leaf
+                if (node.getSymbol() != null) {
+                    rangeSets.add(node.getSymbol().getRanges());
+                }
+            } else {
+                for (Node child : node.getChildren()) {
+                    nodes.push(child);
+                }
             }
         }
     }
 
-    private static void connectStates(State start, State end, Node node, Set<Character> alphabet) throws FlawedLogicException {
+    // connects start to end with a fragment for the node; pending fragments are kept on a stack rather than recursed into,
+    // and the left operands are handled first, so states are numbered the same way a recursive traversal would number them
+    private static void connectStates(State start, State end, Node node, StateFactory factory) throws FlawedLogicException {
+        ArrayDeque<Fragment> fragments = new ArrayDeque<>();
+        fragments.push(new Fragment(start, end, node));
+
+        while (!fragments.isEmpty()) {
+            connectStates(fragments.pop(), fragments, factory);
+        }
+    }
+
+    private static void connectStates(Fragment fragment, ArrayDeque<Fragment> fragments, StateFactory factory) throws FlawedLogicException {
+        State start = fragment.start;
+        State end = fragment.end;
+        Node node = fragment.node;
+
         if (node.getChildren().isEmpty()) {
-            start.addTransition(node.getSymbol().toChar(), end);
+            CharClassMap classes = factory.getCharClasses();
+
+            for (int charClass : classes.getClasses(node.getSymbol().getRanges())) {
+                start.addTransition(classes.getRepresentative(charClass), end);
+            }
+
             return;
         }
 
@@ -65,26 +131,93 @@ public class NfaHelper {
         }
 
         if (operator.toChar() == '|') {
-            connectStates(start, end, children.get(0), alphabet);
-            connectStates(start, end, children.get(1), alphabet);
+            fragments.push(new Fragment(start, end, children.get(1)));
+            fragments.push(new Fragment(start, end, children.get(0)));
 
         } else if (operator.toChar() == Symbol.CONCATENATION_SYMBOL) {
-            State s = new State(alphabet);
-            connectStates(start, s, children.get(0), alphabet);
-            connectStates(s, end, children.get(1), alphabet);
+            State s = factory.newState();
+            fragments.push(new Fragment(s, end, children.get(1)));
+            fragments.push(new Fragment(start, s, children.get(0)));
 
         } else if (operator.toChar() == '*') {
-            State s1 = new State(alphabet);
-            State s2 = new State(alphabet);
-            start.addTransition(null, s1);
             start.addTransition(null, end);
-            s2.addTransition(null, s1);
-            s2.addTransition(null, end);
-            connectStates(s1, s2, children.get(0), alphabet);
+            connectLoop(start, end, children.get(0), fragments, factory);
+
+        } else if (operator.toChar() == '+') {
+            connectLoop(start, end, children.get(0), fragments, factory);
+
+        } else if (operator.toChar() == '?') { // no states of its own, the operand goes right between start and end
+            start.addTransition(null, end);
+            fragments.push(new Fragment(start, end, children.get(0)));
+
+        } else if (operator.isRepetition()) {
+            connectRepetition(start, end, operator, children.get(0), fragments, factory);
 
         } else {
             throw new FlawedLogicException("Intermediary node (symbol '" + operator + "') wasn't recognized as operator");
         }
     }
 
+    // the operand once or more: the fragment gets states of its own, so that the way back doesn't lead to anything before it
+    private static void connectLoop(State start, State end, Node operand, ArrayDeque<Fragment> fragments, StateFactory factory) throws FlawedLogicException {
+        State s1 = factory.newState();
+        State s2 = factory.newState();
+        start.addTransition(null, s1);
+        s2.addTransition(null, s1);
+        s2.addTransition(null, end);
+        fragments.push(new Fragment(s1, s2, operand));
+    }
+
+    // a chain of copies of the operand: the mandatory ones in a row, then either a loop ({m,}) or the optional ones, all of which
+    // share end as the way out, so that x{2,5} takes 5 fragments and as many ε-transitions rather than nested alternatives
+    private static void connectRepetition(State start, State end, Symbol repetition, Node operand, ArrayDeque<Fragment> fragments, StateFactory factory) throws FlawedLogicException {
+        boolean isUnbounded = repetition.getMaxCount() == Symbol.UNBOUNDED;
+        int mandatoryCount = isUnbounded ? Math.max(repetition.getMinCount() - 1, 0) : repetition.getMinCount();
+        int optionalCount = isUnbounded ? 0 : repetition.getMaxCount() - repetition.getMinCount();
+        List<Fragment> chain = new ArrayList<>();
+        State current = start;
+
+        for (int i = 0; i < mandatoryCount + optionalCount; i++) {
+            if (i >= mandatoryCount) {
+                current.addTransition(null, end);
+            }
+
+            State next = i == mandatoryCount + optionalCount - 1 && !isUnbounded ? end : factory.newState();
+            chain.add(new Fragment(current, next, operand));
+            current = next;
+        }
+
+        if (isUnbounded) { // x+ for {m,} where m > 0, x* for {0,}
+            if (repetition.getMinCount() == 0) {
+                current.addTransition(null, end);
+            }
+
+            connectLoop(current, end, operand, fragments, factory);
+        } else if (mandatoryCount + optionalCount == 0) { // x{0}
+            start.addTransition(null, end);
+        }
+
+        // pushed last to first, so that the copies are built left to right
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            fragments.push(chain.get(i));
+        }
+    }
+
+    // a part of the NFA yet to be built: the states between which the node's fragment goes
+    private static class Fragment {
+
+        private final State start;
+
+        private final State end;
+
+        private final Node node;
+
+        private Fragment(State start, State end, Node node) {
+            this.start = start;
+            this.end = end;
+            this.node = node;
+        }
+
+    }
+
 }
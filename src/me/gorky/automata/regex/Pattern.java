@@ -0,0 +1,259 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.BadInputException;
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.exceptions.StateLimitException;
+import me.gorky.automata.regex.structures.ByteSequence;
+import me.gorky.automata.regex.structures.CompilationStats;
+import me.gorky.automata.regex.structures.Node;
+import me.gorky.automata.regex.structures.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+// a regex compiled all the way through the tree -> NFA -> DFA -> minimized DFA pipeline (or a part of it, depending on the engine and the construction)
+public class Pattern implements MatchEngine {
+
+    public enum Engine {
+        DFA, // fully determinized and minimized up front
+        LAZY_DFA, // determinized while matching
+        NFA, // simulated directly, nothing is determinized
+        AUTO // DFA, unless it has too many states, then NFA
+    }
+
+    // how the DFA gets built for the DFA and AUTO engines
+    public enum Construction {
+        SUBSET, // syntax tree -> NFA -> subset construction
+        POSITIONS // syntax tree -> DFA straight away, see PositionHelper
+    }
+
+    private final String regex;
+
+    private final Engine engine;
+
+    private final MatchEngine matchEngine;
+
+    private final Prefilter prefilter; // null if the regex requires no literals or the prefilter was turned off
+
+    private final boolean isUtf8;
+
+    private Pattern(String regex, Engine engine, MatchEngine matchEngine, Prefilter prefilter, boolean isUtf8) {
+        this.regex = regex;
+        this.engine = engine;
+        this.matchEngine = matchEngine;
+        this.prefilter = prefilter;
+        this.isUtf8 = isUtf8;
+    }
+
+    public static Pattern compile(String regex) throws BadInputException, FlawedLogicException {
+        return compile(regex, new CompileOptions());
+    }
+
+    public static Pattern compile(String regex, CompileOptions options) throws BadInputException, FlawedLogicException {
+        CompilationTracker tracker = new CompilationTracker(regex, options.getListener());
+
+        tracker.start(CompilationStats.Phase.PARSE);
+        // lowered trees are checked once they're lowered, since every char may take several bytes
+        Node root = TreeHelper.buildSyntaxTree(regex, options.isUtf8() ? Integer.MAX_VALUE : options.getMaxRepetitionExpansion());
+        tracker.finish();
+
+        if (options.isUtf8()) {
+            tracker.start(CompilationStats.Phase.LOWER_TO_UTF8);
+            root = Utf8Helper.lower(root);
+            TreeHelper.checkRepetitionExpansion(root, options.getMaxRepetitionExpansion());
+            tracker.finish();
+        }
+
+        if (tracker.isEnabled()) {
+            tracker.getStats().setTreeSize(TreeHelper.countNodes(root));
+        }
+
+        Prefilter prefilter = null;
+
+        if (options.isUsePrefilter()) {
+            tracker.start(CompilationStats.Phase.FIND_LITERALS);
+            prefilter = Prefilter.create(LiteralHelper.analyze(root));
+            tracker.finish();
+        }
+
+        Engine engine;
+        MatchEngine matchEngine;
+        State nfaEntry = null;
+
+        switch (options.getEngine()) {
+            case LAZY_DFA:
+                nfaEntry = buildNfa(root, tracker);
+                tracker.start(CompilationStats.Phase.INDEX_NFA);
+                engine = Engine.LAZY_DFA;
+                matchEngine = new LazyDfa(nfaEntry, options.getLazyCacheCapacity());
+                tracker.finish();
+                break;
+
+            case NFA:
+                nfaEntry = buildNfa(root, tracker);
+                engine = Engine.NFA;
+                matchEngine = simulate(nfaEntry, tracker);
+                break;
+
+            default: // DFA never runs into the limit
+                int maxStates = options.getEngine() == Engine.AUTO ? options.getMaxDfaStates() : Integer.MAX_VALUE;
+
+                try {
+                    State dfaEntry;
+
+                    if (options.getConstruction() == Construction.POSITIONS) {
+                        tracker.start(CompilationStats.Phase.BUILD_POSITION_DFA);
+                        dfaEntry = PositionHelper.buildDfa(root, maxStates);
+                    } else {
+                        nfaEntry = buildNfa(root, tracker);
+                        tracker.start(CompilationStats.Phase.DETERMINIZE);
+                        dfaEntry = DfaHelper.buildDfa(nfaEntry, maxStates);
+                    }
+
+                    tracker.finish();
+                    engine = Engine.DFA;
+                    matchEngine = minimize(dfaEntry, options, tracker);
+                } catch (StateLimitException ex) {
+                    tracker.finish();
+                    nfaEntry = nfaEntry == null ? buildNfa(root, tracker) : nfaEntry;
+                    engine = Engine.NFA;
+                    matchEngine = simulate(nfaEntry, tracker);
+                }
+        }
+
+        if (tracker.isEnabled() && engine != Engine.DFA) {
+            tracker.getStats().setCharClassCount(nfaEntry.getCharClasses().getClassCount());
+            tracker.getStats().setTransitionCount(AutomatonHelper.countTransitions(nfaEntry));
+        }
+
+        // every field is final and set here, so patterns can be shared between threads as they are
+        Pattern pattern = new Pattern(regex, engine, matchEngine, prefilter, options.isUtf8());
+        tracker.compiled(engine);
+
+        return pattern;
+    }
+
+    private static State buildNfa(Node root, CompilationTracker tracker) throws FlawedLogicException {
+        tracker.start(CompilationStats.Phase.BUILD_NFA);
+        State nfaEntry = NfaHelper.buildNfa(root);
+        tracker.finish();
+
+        if (tracker.isEnabled()) {
+            tracker.getStats().setNfaStateCount(AutomatonHelper.countStates(nfaEntry));
+        }
+
+        return nfaEntry;
+    }
+
+    private static MatchEngine simulate(State nfaEntry, CompilationTracker tracker) {
+        tracker.start(CompilationStats.Phase.INDEX_NFA);
+        PikeVm vm = new PikeVm(nfaEntry);
+        tracker.finish();
+
+        return vm;
+    }
+
+    private static MatchEngine minimize(State dfaEntry, CompileOptions options, CompilationTracker tracker) throws FlawedLogicException {
+        tracker.start(CompilationStats.Phase.FIND_EQUIVALENCE_CLASSES);
+        Set<Set<State>> equivalenceClasses = DfaHelper.getEquivalenceClasses(dfaEntry);
+        tracker.finish();
+
+        tracker.start(CompilationStats.Phase.MERGE_EQUIVALENCE_CLASSES);
+        State minimizedEntry = DfaHelper.buildDfa(equivalenceClasses);
+        tracker.finish();
+
+        tracker.start(CompilationStats.Phase.FLATTEN);
+        CompiledDfa dfa = DfaHelper.compile(minimizedEntry);
+        tracker.finish();
+
+        if (tracker.isEnabled()) {
+            CompilationStats stats = tracker.getStats();
+            stats.setDfaStateCount(AutomatonHelper.countStates(dfaEntry));
+            stats.setEquivalenceClassCount(equivalenceClasses.size());
+            stats.setMinimizedDfaStateCount(dfa.getStateCount());
+            stats.setCharClassCount(dfa.getClasses().getClassCount());
+            stats.setTransitionCount(AutomatonHelper.countTransitions(minimizedEntry));
+        }
+
+        if (!options.isGenerateCode()) {
+            return dfa;
+        }
+
+        tracker.start(CompilationStats.Phase.GENERATE_CODE);
+        MatchEngine generated = CodegenHelper.generate(dfa);
+        tracker.finish();
+
+        return generated;
+    }
+
+    // the patterns compiled with CompileOptions.setUtf8 run over a ByteSequence as it is, any other input gets encoded to UTF-8 first
+    @Override
+    public boolean matches(CharSequence input) {
+        if (isUtf8 && !(input instanceof ByteSequence)) {
+            input = new ByteSequence(input.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        return (prefilter == null || prefilter.mayMatch(input)) && matchEngine.matches(input);
+    }
+
+    // UTF-8 bytes: run over directly if the pattern was compiled with CompileOptions.setUtf8, decoded otherwise
+    public boolean matches(byte[] input) {
+        return matches(input, 0, input.length);
+    }
+
+    public boolean matches(byte[] input, int offset, int length) {
+        return matches(isUtf8 ? new ByteSequence(input, offset, length) : new String(input, offset, length, StandardCharsets.UTF_8));
+    }
+
+    // the bytes from the buffer's position to its limit, which isn't moved; a MemorySegment can be passed as segment.asByteBuffer()
+    public boolean matches(ByteBuffer input) {
+        return matches(isUtf8 ? new ByteSequence(input) : StandardCharsets.UTF_8.decode(input.duplicate()));
+    }
+
+    // a matcher for input that comes in chunks; only patterns compiled into a DFA have one, since the other engines keep more than a state
+    public Matcher matcher() {
+        if (matchEngine instanceof CompiledDfa) {
+            return new Matcher((CompiledDfa) matchEngine, isUtf8);
+        } else if (matchEngine instanceof GeneratedDfa) {
+            return new Matcher(((GeneratedDfa) matchEngine).getDfa(), isUtf8);
+        } else {
+            throw new IllegalStateException("The pattern was compiled for the " + engine + " engine, so it can't be matched in chunks");
+        }
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    // the engine that was actually picked, never AUTO
+    public Engine getEngine() {
+        return engine;
+    }
+
+    // the states of the DFA, of the NFA or the most the lazy DFA may cache, depending on the engine
+    public int getStateCount() {
+        if (matchEngine instanceof CompiledDfa) {
+            return ((CompiledDfa) matchEngine).getStateCount();
+        } else if (matchEngine instanceof GeneratedDfa) {
+            return ((GeneratedDfa) matchEngine).getDfa().getStateCount();
+        } else if (matchEngine instanceof LazyDfa) {
+            return ((LazyDfa) matchEngine).getMaxCachedStates();
+        } else {
+            return ((PikeVm) matchEngine).getStateCount();
+        }
+    }
+
+    public boolean isUtf8() {
+        return isUtf8;
+    }
+
+    public MatchEngine getMatchEngine() {
+        return matchEngine;
+    }
+
+    public Prefilter getPrefilter() {
+        return prefilter;
+    }
+
+}
@@ -0,0 +1,111 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.BadInputException;
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// keeps compiled patterns by their regex, evicting the least recently used ones once there are too many of them or too many states
+public class PatternCache {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    public static final long DEFAULT_MAX_WEIGHT = 1 << 22; // states
+
+    private final CompileOptions options;
+
+    private final int maxSize;
+
+    private final long maxWeight;
+
+    private final LinkedHashMap<String, Pattern> patterns = new LinkedHashMap<>(16, 0.75f, true); // in access order
+
+    private long weight = 0;
+
+    private long hitCount = 0;
+
+    private long missCount = 0;
+
+    private long evictionCount = 0;
+
+    public PatternCache() {
+        this(new CompileOptions(), DEFAULT_MAX_SIZE, DEFAULT_MAX_WEIGHT);
+    }
+
+    // the options are used for every pattern and shouldn't be modified afterwards
+    public PatternCache(CompileOptions options, int maxSize, long maxWeight) {
+        this.options = options;
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+    }
+
+    public Pattern get(String regex) throws BadInputException, FlawedLogicException {
+        synchronized (this) {
+            Pattern pattern = patterns.get(regex);
+
+            if (pattern != null) {
+                hitCount++;
+                return pattern;
+            }
+
+            missCount++;
+        }
+
+        // compiled outside of the lock, so that different patterns can be compiled concurrently
+        Pattern pattern = Pattern.compile(regex, options);
+
+        synchronized (this) {
+            Pattern existing = patterns.get(regex);
+
+            if (existing != null) { // another thread has compiled the same regex in the meantime
+                return existing;
+            }
+
+            if (pattern.getStateCount() <= maxWeight) { // a pattern heavier than the whole cache isn't kept at all
+                patterns.put(regex, pattern);
+                weight += pattern.getStateCount();
+                evict();
+            }
+        }
+
+        return pattern;
+    }
+
+    public synchronized void clear() {
+        patterns.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return patterns.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Pattern>> iterator = patterns.entrySet().iterator();
+
+        while (patterns.size() > maxSize || weight > maxWeight) {
+            weight -= iterator.next().getValue().getStateCount();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.BadInputException;
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.structures.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// many patterns compiled into a single minimized DFA, so that one pass over an input tells every pattern it matches
+public class PatternSet {
+
+    private final List<String> regexes;
+
+    private final CompiledDfa dfa;
+
+    private PatternSet(List<String> regexes, CompiledDfa dfa) {
+        this.regexes = regexes;
+        this.dfa = dfa;
+    }
+
+    // the patterns' ids are their indexes in the list
+    public static PatternSet compile(List<String> regexes) throws BadInputException, FlawedLogicException {
+        List<Node> roots = new ArrayList<>();
+
+        for (String regex : regexes) {
+            roots.add(TreeHelper.buildSyntaxTree(regex));
+        }
+
+        CompiledDfa dfa = DfaHelper.compile(DfaHelper.minimize(DfaHelper.buildDfa(NfaHelper.buildNfa(roots))));
+
+        return new PatternSet(new ArrayList<>(regexes), dfa);
+    }
+
+    // the ids of all the patterns matching the input, in ascending order
+    public int[] match(CharSequence input) {
+        int state = dfa.run(input);
+        return state == CompiledDfa.DEAD_STATE ? new int[0] : dfa.getAcceptedPatterns(state).clone();
+    }
+
+    public boolean matchesAny(CharSequence input) {
+        return dfa.matches(input);
+    }
+
+    // a matcher for input that comes in chunks, see Matcher.getAcceptedPatterns
+    public Matcher matcher() {
+        return new Matcher(dfa);
+    }
+
+    public int size() {
+        return regexes.size();
+    }
+
+    public String getRegex(int patternId) {
+        return regexes.get(patternId);
+    }
+
+    public CompiledDfa getDfa() {
+        return dfa;
+    }
+
+}
@@ -0,0 +1,116 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.CharClassMap;
+import me.gorky.automata.regex.structures.IndexedNfa;
+import me.gorky.automata.regex.structures.SparseSet;
+import me.gorky.automata.regex.structures.State;
+
+import java.util.BitSet;
+
+// simulates the NFA directly, keeping the set of active states: O(n·m) for n chars and m states, with no determinization at all
+// the ε-closures are added to the set on the fly (see IndexedNfa.closureInto), so memory stays linear in the NFA
+public class PikeVm implements MatchEngine {
+
+    private final IndexedNfa nfa;
+
+    private final CharClassMap classes;
+
+    public PikeVm(State nfaEntry) {
+        nfa = new IndexedNfa(nfaEntry);
+        classes = nfa.getClasses();
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+        SparseSet current = new SparseSet(nfa.getStateCount());
+        SparseSet next = new SparseSet(nfa.getStateCount());
+        nfa.closureInto(nfa.getEntry(), current);
+
+        for (int i = 0, length = input.length(); i < length; i++) {
+            step(current, input.charAt(i), next);
+
+            if (next.size() == 0) {
+                return false;
+            }
+
+            SparseSet swap = current;
+            current = next;
+            next = swap;
+        }
+
+        return containsExit(current);
+    }
+
+    // the end of the longest match starting at start, -1 if there's none
+    public int findLongestMatchEnd(CharSequence input, int start) {
+        SparseSet current = new SparseSet(nfa.getStateCount());
+        SparseSet next = new SparseSet(nfa.getStateCount());
+        nfa.closureInto(nfa.getEntry(), current);
+        int end = containsExit(current) ? start : -1;
+
+        for (int i = start, length = input.length(); i < length && current.size() > 0; i++) {
+            step(current, input.charAt(i), next);
+            SparseSet swap = current;
+            current = next;
+            next = swap;
+
+            if (containsExit(current)) {
+                end = i + 1;
+            }
+        }
+
+        return end;
+    }
+
+    // for the NFA of a reversed regex, read backwards: every position from from on where a match of the original regex starts;
+    // the entry state is added back before every char, as the .* prefix loop of DfaHelper.addPrefixLoop does for DFAs
+    public BitSet findMatchStarts(CharSequence input, int from) {
+        BitSet starts = new BitSet(input.length() + 1);
+        SparseSet current = new SparseSet(nfa.getStateCount());
+        SparseSet next = new SparseSet(nfa.getStateCount());
+        nfa.closureInto(nfa.getEntry(), current);
+        starts.set(input.length(), containsExit(current));
+
+        for (int i = input.length() - 1; i >= from; i--) {
+            step(current, input.charAt(i), next);
+            nfa.closureInto(nfa.getEntry(), next);
+            starts.set(i, containsExit(next));
+            SparseSet swap = current;
+            current = next;
+            next = swap;
+        }
+
+        return starts;
+    }
+
+    // the states reached from the current ones by the char, along with their closures
+    private void step(SparseSet current, char ch, SparseSet next) {
+        int charClass = classes.classOf(ch);
+        next.clear();
+
+        for (int j = 0; j < current.size(); j++) {
+            int[] destinations = nfa.getDestinations(current.get(j), charClass);
+
+            if (destinations != null) {
+                for (int destination : destinations) {
+                    nfa.closureInto(destination, next);
+                }
+            }
+        }
+    }
+
+    private boolean containsExit(SparseSet states) {
+        for (int j = 0; j < states.size(); j++) {
+            if (nfa.isExit(states.get(j))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public int getStateCount() {
+        return nfa.getStateCount();
+    }
+
+}
@@ -0,0 +1,281 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.exceptions.StateLimitException;
+import me.gorky.automata.regex.structures.CharClassMap;
+import me.gorky.automata.regex.structures.Node;
+import me.gorky.automata.regex.structures.State;
+import me.gorky.automata.regex.structures.StateFactory;
+import me.gorky.automata.regex.structures.Symbol;
+
+import java.util.*;
+
+// builds a DFA straight from the syntax tree, without an NFA in between (the followpos construction of Aho, Sethi and Ullman):
+// every leaf is a position, an end marker is concatenated to the regex, and DFA states are sets of positions
+// that could match the next char; a state accepts if it contains the end marker
+public class PositionHelper {
+
+    public static State buildDfa(Node root) throws FlawedLogicException {
+        return construct(root, Integer.MAX_VALUE);
+    }
+
+    // giving up once the DFA gets more than maxStates states
+    public static State buildDfa(Node root, int maxStates) throws FlawedLogicException, StateLimitException {
+        State dfaEntry = construct(root, maxStates);
+
+        if (dfaEntry == null) {
+            throw new StateLimitException("The DFA has more than " + maxStates + " states");
+        }
+
+        return dfaEntry;
+    }
+
+    // returns null if the limit gets exceeded
+    private static State construct(Node root, int maxStates) throws FlawedLogicException {
+        root = TreeHelper.expandRepetitions(root); // every copy of a repeated operand needs positions of its own
+        StateFactory factory = NfaHelper.createFactory(Collections.singletonList(root), false);
+        List<int[]> positionClasses = new ArrayList<>(); // the char classes every position matches
+        List<List<int[]>> followpos = new ArrayList<>(); // the sets whose union is the followpos of every position
+        int[] start;
+
+        if (root.getSymbol() == null) {
+            start = new int[]{0};
+        } else {
+            Positions positions = analyze(root, factory.getCharClasses(), positionClasses, followpos);
+            int[] end = {positionClasses.size()};
+            addFollowpos(positions.last, end, followpos);
+            start = positions.isNullable ? concat(positions.first, end) : positions.first;
+        }
+
+        positionClasses.add(new int[0]); // the end marker matches nothing
+        followpos.add(new ArrayList<int[]>());
+
+        State entry = mergePositions(start, positionClasses, followpos, factory, maxStates);
+
+        if (entry != null) {
+            entry.makeEntry();
+        }
+
+        return entry;
+    }
+
+    // nullable, firstpos and lastpos of every node, and followpos of every position along the way
+    // iterative post-order traversal, since trees of long regexes are too deep for recursion; leaves are numbered left to right,
+    // so the positions of a left operand are all smaller than the ones of the right operand, and unions are concatenations
+    private static Positions analyze(Node root, CharClassMap classes, List<int[]> positionClasses, List<List<int[]>> followpos) throws FlawedLogicException {
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Positions> results = new ArrayDeque<>();
+        ArrayList<Node> postOrder = new ArrayList<>();
+        nodes.push(root);
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            postOrder.add(node);
+
+            for (Node child : node.getChildren()) {
+                nodes.push(child);
+            }
+        }
+
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Node node = postOrder.get(i);
+
+            if (node.getChildren().isEmpty()) {
+                int[] position = {positionClasses.size()};
+                positionClasses.add(classes.getClasses(node.getSymbol().getRanges()));
+                followpos.add(new ArrayList<int[]>());
+                results.push(new Positions(false, position, position));
+                continue;
+            }
+
+            Symbol operator = node.getSymbol();
+
+            if (node.getChildren().size() != operator.getOperandsCount()) {
+                throw new FlawedLogicException("Operator '" + operator + "' has incorrect amount of operands (" + node.getChildren().size() + ")");
+            }
+
+            if (operator.toChar() == '*' || operator.toChar() == '+') {
+                Positions child = results.pop();
+                addFollowpos(child.last, child.first, followpos);
+                results.push(new Positions(operator.toChar() == '*' || child.isNullable, child.first, child.last));
+                continue;
+            }
+
+            if (operator.toChar() == '?') {
+                Positions child = results.pop();
+                results.push(new Positions(true, child.first, child.last));
+                continue;
+            }
+
+            if (operator.isRepetition()) { // only x{0} is left after the expansion, its positions can never be reached
+                results.pop();
+                results.push(new Positions(true, new int[0], new int[0]));
+                continue;
+            }
+
+            Positions right = results.pop();
+            Positions left = results.pop();
+
+            if (operator.toChar() == '|') {
+                results.push(new Positions(left.isNullable || right.isNullable, concat(left.first, right.first), concat(left.last, right.last)));
+
+            } else if (operator.toChar() == Symbol.CONCATENATION_SYMBOL) {
+                addFollowpos(left.last, right.first, followpos);
+                results.push(new Positions(left.isNullable && right.isNullable,
+                        left.isNullable ? concat(left.first, right.first) : left.first,
+                        right.isNullable ? concat(left.last, right.last) : right.last));
+
+            } else {
+                throw new FlawedLogicException("Intermediary node (symbol '" + operator + "') wasn't recognized as operator");
+            }
+        }
+
+        return results.pop();
+    }
+
+    // the sets are shared rather than copied, so a star over a long alternation doesn't cost a copy per position
+    private static void addFollowpos(int[] from, int[] to, List<List<int[]>> followpos) {
+        for (int position : from) {
+            List<int[]> sets = followpos.get(position);
+
+            if (sets.isEmpty() || sets.get(sets.size() - 1) != to) {
+                sets.add(to);
+            }
+        }
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    // the subset construction over positions: the destination of a state by a class is the union of followpos
+    // of the state's positions that match the class
+    private static State mergePositions(int[] start, List<int[]> positionClasses, List<List<int[]>> followpos, StateFactory factory, int maxStates) throws FlawedLogicException {
+        CharClassMap classes = factory.getCharClasses();
+        int endMarker = positionClasses.size() - 1;
+        Map<PositionSet, State> mergedStates = new HashMap<>();
+        List<PositionSet> sets = new ArrayList<>();
+        List<State> states = new ArrayList<>();
+        addMergedState(new PositionSet(start), endMarker, mergedStates, sets, states, factory);
+
+        int[] marks = new int[positionClasses.size()]; // a position is in the current union if its mark is the current generation
+        int[] classMarks = new int[classes.getClassCount()];
+        int generation = 0;
+        int[] union = new int[positionClasses.size()];
+        int[] touchedClasses = new int[classes.getClassCount()];
+
+        for (int i = 0; i < sets.size(); i++) {
+            int[] set = sets.get(i).positions;
+            int touchedCount = 0;
+            generation++;
+
+            for (int position : set) {
+                for (int charClass : positionClasses.get(position)) {
+                    if (classMarks[charClass] != generation) {
+                        classMarks[charClass] = generation;
+                        touchedClasses[touchedCount++] = charClass;
+                    }
+                }
+            }
+
+            Arrays.sort(touchedClasses, 0, touchedCount);
+
+            for (int t = 0; t < touchedCount; t++) {
+                int charClass = touchedClasses[t];
+                int unionSize = 0;
+                generation++;
+
+                for (int position : set) {
+                    if (Arrays.binarySearch(positionClasses.get(position), charClass) < 0) {
+                        continue;
+                    }
+
+                    for (int[] follow : followpos.get(position)) {
+                        for (int next : follow) {
+                            if (marks[next] != generation) {
+                                marks[next] = generation;
+                                union[unionSize++] = next;
+                            }
+                        }
+                    }
+                }
+
+                int[] destinationPositions = Arrays.copyOf(union, unionSize);
+                Arrays.sort(destinationPositions);
+                PositionSet destinationSet = new PositionSet(destinationPositions);
+                State destination = mergedStates.get(destinationSet);
+
+                if (destination == null) {
+                    if (states.size() == maxStates) {
+                        return null;
+                    }
+
+                    destination = addMergedState(destinationSet, endMarker, mergedStates, sets, states, factory);
+                }
+
+                states.get(i).addTransition(classes.getRepresentative(charClass), destination);
+            }
+        }
+
+        return states.get(0);
+    }
+
+    private static State addMergedState(PositionSet set, int endMarker, Map<PositionSet, State> mergedStates, List<PositionSet> sets, List<State> states, StateFactory factory) {
+        State mergedState = factory.newState();
+
+        // the end marker is the largest position
+        if (set.positions.length > 0 && set.positions[set.positions.length - 1] == endMarker) {
+            mergedState.makeExit();
+        }
+
+        mergedStates.put(set, mergedState);
+        sets.add(set);
+        states.add(mergedState);
+
+        return mergedState;
+    }
+
+    // nullable, firstpos and lastpos of a node; the arrays are sorted and shouldn't be modified
+    private static class Positions {
+
+        private final boolean isNullable;
+
+        private final int[] first;
+
+        private final int[] last;
+
+        private Positions(boolean isNullable, int[] first, int[] last) {
+            this.isNullable = isNullable;
+            this.first = first;
+            this.last = last;
+        }
+
+    }
+
+    // a sorted set of positions, usable as a map key
+    private static class PositionSet {
+
+        private final int[] positions;
+
+        private final int hash;
+
+        private PositionSet(int[] positions) {
+            this.positions = positions;
+            this.hash = Arrays.hashCode(positions);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PositionSet && Arrays.equals(positions, ((PositionSet) o).positions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.structures.LiteralScanner;
+import me.gorky.automata.regex.structures.RequiredLiterals;
+
+import java.util.Arrays;
+
+// cheap checks that reject inputs before an engine gets to read them, built from the literals a regex requires:
+// prefixes and suffixes are compared in place, and factors are searched with indexOf if there are few of them and the input is a String,
+// or with a LiteralScanner otherwise
+public class Prefilter {
+
+    private static final int MAX_INDEX_OF_FACTORS = 8; // a pass of indexOf per factor still beats a single pass of the scanner up to this many
+
+    private final String[] prefixes;
+
+    private final String[] suffixes;
+
+    private final String[] factors;
+
+    private final LiteralScanner scanner;
+
+    private final boolean isFactorImplied; // whether the factors are the prefixes or the suffixes, so that finding them again is pointless
+
+    private Prefilter(RequiredLiterals literals) {
+        this.prefixes = literals.getPrefixes();
+        this.suffixes = literals.getSuffixes();
+        this.factors = literals.getFactors();
+        this.scanner = factors.length > 0 ? new LiteralScanner(factors) : null; // for the inputs that aren't Strings too
+        this.isFactorImplied = factors.length == 0 || Arrays.equals(factors, prefixes) || Arrays.equals(factors, suffixes);
+    }
+
+    // null if nothing is required, since then nothing would be filtered
+    public static Prefilter create(RequiredLiterals literals) {
+        return literals.isEmpty() ? null : new Prefilter(literals);
+    }
+
+    // false if the input as a whole can't be matched
+    public boolean mayMatch(CharSequence input) {
+        if (prefixes.length > 0 && !startsWithAny(input, prefixes)) {
+            return false;
+        }
+
+        if (suffixes.length > 0 && !endsWithAny(input, suffixes)) {
+            return false;
+        }
+
+        return isFactorImplied || containsAny(input, 0);
+    }
+
+    // false if no part of the input at from or later can be matched
+    public boolean mayContainMatch(CharSequence input, int from) {
+        return factors.length == 0 || containsAny(input, from);
+    }
+
+    private boolean containsAny(CharSequence input, int from) {
+        if (factors.length > MAX_INDEX_OF_FACTORS || !(input instanceof String)) {
+            return scanner.isFoundIn(input, from);
+        }
+
+        for (String factor : factors) { // indexOf is an intrinsic
+            if (((String) input).indexOf(factor, from) != -1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean startsWithAny(CharSequence input, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (regionMatches(input, 0, prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean endsWithAny(CharSequence input, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (regionMatches(input, input.length() - suffix.length(), suffix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence input, int offset, String literal) {
+        if (offset < 0 || offset + literal.length() > input.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < literal.length(); i++) {
+            if (input.charAt(offset + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public String[] getPrefixes() {
+        return prefixes;
+    }
+
+    public String[] getSuffixes() {
+        return suffixes;
+    }
+
+    public String[] getFactors() {
+        return factors;
+    }
+
+}
@@ -0,0 +1,209 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.BadInputException;
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.exceptions.StateLimitException;
+import me.gorky.automata.regex.structures.Match;
+import me.gorky.automata.regex.structures.Node;
+import me.gorky.automata.regex.structures.State;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// finds leftmost-longest matches within inputs
+// a DFA of the reversed regex with a .* prefix loop, run backwards, marks every position where some match starts;
+// then the plain DFA, run forwards from the leftmost such position, finds where the longest match ends
+// if either DFA has too many states, both directions are simulated on the NFAs instead, the way Pattern falls back
+public class Searcher {
+
+    private final CompiledDfa forward; // null if simulated
+
+    private final CompiledDfa backward; // null if simulated
+
+    private final PikeVm forwardVm; // null if determinized
+
+    private final PikeVm backwardVm; // null if determinized
+
+    private final Prefilter prefilter; // null if the regex requires no literals
+
+    private Searcher(CompiledDfa forward, CompiledDfa backward, PikeVm forwardVm, PikeVm backwardVm, Prefilter prefilter) {
+        this.forward = forward;
+        this.backward = backward;
+        this.forwardVm = forwardVm;
+        this.backwardVm = backwardVm;
+        this.prefilter = prefilter;
+    }
+
+    public static Searcher compile(String regex) throws BadInputException, FlawedLogicException {
+        return compile(regex, new CompileOptions());
+    }
+
+    // the engine, the state limit, the repetition cap and the prefilter switch are taken from the options, the rest doesn't apply;
+    // LAZY_DFA is treated as AUTO
+    public static Searcher compile(String regex, CompileOptions options) throws BadInputException, FlawedLogicException {
+        Node root = TreeHelper.buildSyntaxTree(regex, options.getMaxRepetitionExpansion());
+        Prefilter prefilter = options.isUsePrefilter() ? Prefilter.create(LiteralHelper.analyze(root)) : null;
+        State forwardEntry = NfaHelper.buildNfa(root);
+        State backwardEntry = NfaHelper.buildNfa(TreeHelper.reverse(root));
+
+        if (options.getEngine() != Pattern.Engine.NFA) {
+            int maxStates = options.getEngine() == Pattern.Engine.DFA ? Integer.MAX_VALUE : options.getMaxDfaStates();
+
+            try {
+                CompiledDfa forward = DfaHelper.compile(DfaHelper.minimize(DfaHelper.buildDfa(forwardEntry, maxStates)));
+                CompiledDfa reversed = DfaHelper.compile(DfaHelper.minimize(DfaHelper.buildDfa(backwardEntry, maxStates)));
+
+                return new Searcher(forward, DfaHelper.addPrefixLoop(reversed, maxStates), null, null, prefilter);
+            } catch (StateLimitException ex) {
+                // falling through to the simulation
+            }
+        }
+
+        return new Searcher(null, null, new PikeVm(forwardEntry), new PikeVm(backwardEntry), prefilter);
+    }
+
+    public boolean isDeterminized() {
+        return forward != null;
+    }
+
+    public Match find(CharSequence input) {
+        return find(input, 0);
+    }
+
+    // the leftmost-longest match starting at from or later, null if there's none
+    public Match find(CharSequence input, int from) {
+        if (prefilter != null && !prefilter.mayContainMatch(input, from)) {
+            return null;
+        }
+
+        if (backward == null) {
+            int start = backwardVm.findMatchStarts(input, from).nextSetBit(from);
+
+            return start == -1 ? null : new Match(start, findEnd(input, start));
+        }
+
+        int start = -1;
+        int state = backward.getEntry();
+
+        if (backward.isAccepting(state)) {
+            start = input.length();
+        }
+
+        for (int i = input.length() - 1; i >= from; i--) {
+            state = backward.step(state, input.charAt(i));
+
+            if (backward.isAccepting(state)) {
+                start = i;
+            }
+        }
+
+        return start == -1 ? null : new Match(start, findEnd(input, start));
+    }
+
+    // non-overlapping leftmost-longest matches from left to right, an empty match moves the search one char further
+    public Iterable<Match> findAll(final CharSequence input) {
+        return new Iterable<Match>() {
+            @Override
+            public Iterator<Match> iterator() {
+                return new MatchIterator(input);
+            }
+        };
+    }
+
+    private BitSet findStarts(CharSequence input) {
+        if (backward == null) {
+            return backwardVm.findMatchStarts(input, 0);
+        }
+
+        BitSet starts = new BitSet(input.length() + 1);
+        int state = backward.getEntry();
+        starts.set(input.length(), backward.isAccepting(state));
+
+        for (int i = input.length() - 1; i >= 0; i--) {
+            state = backward.step(state, input.charAt(i));
+            starts.set(i, backward.isAccepting(state));
+        }
+
+        return starts;
+    }
+
+    // the end of the longest match starting at start, which has to exist
+    private int findEnd(CharSequence input, int start) {
+        if (forward == null) {
+            return forwardVm.findLongestMatchEnd(input, start);
+        }
+
+        int state = forward.getEntry();
+        int end = start;
+
+        for (int i = start; i < input.length(); i++) {
+            state = forward.step(state, input.charAt(i));
+
+            if (forward.isDead(state)) {
+                break;
+            }
+
+            if (forward.isAcceptingForever(state)) { // the match goes on to the end of the input
+                return input.length();
+            }
+
+            if (forward.isAccepting(state)) {
+                end = i + 1;
+            }
+        }
+
+        return end;
+    }
+
+    private class MatchIterator implements Iterator<Match> {
+
+        private final CharSequence input;
+
+        private BitSet starts = null; // found on the first call, with a single backward pass over the whole input
+
+        private int position = 0;
+
+        private Match next = null;
+
+        private MatchIterator(CharSequence input) {
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+
+            if (starts == null) {
+                starts = prefilter == null || prefilter.mayContainMatch(input, 0) ? findStarts(input) : new BitSet();
+            }
+
+            int start = position > input.length() ? -1 : starts.nextSetBit(position);
+
+            if (start == -1) {
+                return false;
+            }
+
+            next = new Match(start, findEnd(input, start));
+            position = next.getEnd() == start ? start + 1 : next.getEnd();
+
+            return true;
+        }
+
+        @Override
+        public Match next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Match match = next;
+            next = null;
+
+            return match;
+        }
+
+    }
+
+}
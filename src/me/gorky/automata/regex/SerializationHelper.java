@@ -0,0 +1,168 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.BadInputException;
+import me.gorky.automata.regex.structures.CharClassMap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// a compact binary format for compiled DFAs, so that they don't have to be recompiled on every start
+// all numbers are big-endian; the ints go first and the chars after them, so that every int is aligned:
+//   header: magic, version, state count, class count, entry state, range count (ints)
+//   range classes (range count ints), transitions (state count * class count ints, DEAD_STATE for none)
+//   range starts (range count chars), representatives (class count chars)
+//   accepting states (a bitset, state count bits rounded up to bytes, the lowest bit of the first byte is state 0)
+// the ids of the patterns that pattern sets' states accept aren't stored
+public class SerializationHelper {
+
+    public static final int MAGIC = 0x52444641; // "RDFA"
+
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 6 * 4;
+
+    public static void write(CompiledDfa dfa, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(dfa, out);
+        }
+    }
+
+    public static void write(CompiledDfa dfa, OutputStream out) throws IOException {
+        CharClassMap classes = dfa.getClasses();
+        int stateCount = dfa.getStateCount();
+        int classCount = classes.getClassCount();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(stateCount);
+        data.writeInt(classCount);
+        data.writeInt(dfa.getEntry());
+        data.writeInt(classes.getRangeCount());
+
+        for (int range = 0; range < classes.getRangeCount(); range++) {
+            data.writeInt(classes.getRangeClass(range));
+        }
+
+        for (int state = 0; state < stateCount; state++) {
+            for (int charClass = 0; charClass < classCount; charClass++) {
+                data.writeInt(dfa.getTransition(state, charClass));
+            }
+        }
+
+        for (int range = 0; range < classes.getRangeCount(); range++) {
+            data.writeChar(classes.getRangeStart(range));
+        }
+
+        for (int charClass = 0; charClass < classCount; charClass++) {
+            data.writeChar(classes.getRepresentative(charClass));
+        }
+
+        for (int state = 0; state < stateCount; state += 8) {
+            int bits = 0;
+
+            for (int bit = 0; bit < 8 && state + bit < stateCount; bit++) {
+                bits |= dfa.isAccepting(state + bit) ? 1 << bit : 0;
+            }
+
+            data.writeByte(bits);
+        }
+
+        data.flush();
+    }
+
+    // maps the file into memory: the transitions are read straight from the mapping, only the class map gets copied onto the heap
+    public static MappedDfa load(Path file) throws IOException, BadInputException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return wrap(buffer); // the mapping stays valid after the channel is closed
+        }
+    }
+
+    // the buffer's content from its position to its limit has to be a compiled DFA; the buffer itself isn't modified
+    public static MappedDfa wrap(ByteBuffer buffer) throws BadInputException {
+        ByteBuffer data = buffer.slice(); // big-endian, regardless of the buffer's order
+
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new BadInputException("Not a compiled DFA");
+        }
+
+        if (data.getInt(4) != VERSION) {
+            throw new BadInputException("Unsupported compiled DFA version " + data.getInt(4));
+        }
+
+        int stateCount = data.getInt(8);
+        int classCount = data.getInt(12);
+        int entry = data.getInt(16);
+        int rangeCount = data.getInt(20);
+
+        if (stateCount < 1 || classCount < 1 || rangeCount < 1 || entry < 0 || entry >= stateCount) {
+            throw new BadInputException("Corrupted compiled DFA");
+        }
+
+        long rangeClassesOffset = HEADER_SIZE;
+        long transitionsOffset = rangeClassesOffset + rangeCount * 4L;
+        long rangeStartsOffset = transitionsOffset + (long) stateCount * classCount * 4L;
+        long representativesOffset = rangeStartsOffset + rangeCount * 2L;
+        long acceptingOffset = representativesOffset + classCount * 2L;
+        long size = acceptingOffset + (stateCount + 7) / 8;
+
+        if (size != data.remaining()) {
+            throw new BadInputException("Corrupted compiled DFA");
+        }
+
+        char[] rangeStarts = new char[rangeCount];
+        int[] rangeClasses = new int[rangeCount];
+        char[] representatives = new char[classCount];
+
+        for (int range = 0; range < rangeCount; range++) {
+            rangeStarts[range] = data.getChar((int) (rangeStartsOffset + range * 2L));
+            rangeClasses[range] = data.getInt((int) (rangeClassesOffset + range * 4L));
+
+            // the class lookup binary-searches the starts, so they have to begin at 0 and be strictly increasing
+            // (which also keeps them, and their count, within the char range)
+            boolean isOrdered = range == 0 ? rangeStarts[range] == 0 : rangeStarts[range] > rangeStarts[range - 1];
+
+            if (!isOrdered || rangeClasses[range] < 0 || rangeClasses[range] >= classCount) {
+                throw new BadInputException("Corrupted compiled DFA");
+            }
+        }
+
+        for (int charClass = 0; charClass < classCount; charClass++) {
+            representatives[charClass] = data.getChar((int) (representativesOffset + charClass * 2L));
+        }
+
+        data.position((int) transitionsOffset).limit((int) rangeStartsOffset);
+        IntBuffer transitions = data.slice().asIntBuffer();
+
+        // a single pass over the table, so that a corrupted file fails here rather than in the middle of matching;
+        // it finds the states every char loops back from as well, which is where a minimized DFA's sinks end up
+        boolean[] selfLooping = new boolean[stateCount];
+
+        for (int state = 0; state < stateCount; state++) {
+            selfLooping[state] = true;
+
+            for (int charClass = 0; charClass < classCount; charClass++) {
+                int destination = transitions.get(state * classCount + charClass);
+
+                if (destination < CompiledDfa.DEAD_STATE || destination >= stateCount) {
+                    throw new BadInputException("Corrupted compiled DFA");
+                }
+
+                selfLooping[state] &= destination == state;
+            }
+        }
+
+        data.clear().position((int) acceptingOffset);
+        ByteBuffer accepting = data.slice();
+
+        return new MappedDfa(new CharClassMap(rangeStarts, rangeClasses, representatives), entry, stateCount, transitions, accepting, selfLooping);
+    }
+
+}
@@ -5,83 +5,138 @@ import me.gorky.automata.regex.exceptions.FlawedLogicException;
 import me.gorky.automata.regex.structures.Node;
 import me.gorky.automata.regex.structures.Symbol;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 
 public class TreeHelper {
 
+    public static final int DEFAULT_MAX_REPETITION_EXPANSION = 10000; // NFA states
+
     public static Node buildSyntaxTree(String regex) throws BadInputException, FlawedLogicException {
+        return buildSyntaxTree(regex, DEFAULT_MAX_REPETITION_EXPANSION);
+    }
+
+    // rejects regexes whose counted repetitions would add more than maxRepetitionExpansion states to the NFA (see checkRepetitionExpansion)
+    public static Node buildSyntaxTree(String regex, int maxRepetitionExpansion) throws BadInputException, FlawedLogicException {
         if (regex.equals("")) {
             return new Node(null);
         }
 
-        LinkedList<Symbol> symbols = makeSymbolList(regex);
-        preprocess(symbols);
+        ArrayList<Symbol> symbols = removeEmptyBrackets(makeSymbolList(regex));
+        Node root = createNode(symbols);
+        checkRepetitionExpansion(root, maxRepetitionExpansion);
 
-        return createNode(symbols);
+        return root;
     }
 
-    // recursive method
-    private static Node createNode(LinkedList<Symbol> symbols) throws BadInputException, FlawedLogicException {
-        int operatorIndex = -1; // will contain the location of an operator with the highest priority
-
-        for (int i = 0; i < symbols.size(); i++) {
-            Symbol currentSymbol = symbols.get(i);
-
-            // if we're at the opening bracket, let's skip to the closing one or drop them altogether if the whole expression is enclosed
-            if (currentSymbol.isOpeningBracket()) {
-                boolean openedAtBeginning = i == 0;
-                i = skipToClosingBracket(symbols, i);
+    // automata grow along with the states counted repetitions add (see getAddedNfaStates), and (a{1000}){1000} would take forever to compile;
+    // separate from parsing, so that trees rewritten afterwards, such as the ones Utf8Helper lowers, can be checked as they end up
+    public static void checkRepetitionExpansion(Node root, int maxRepetitionExpansion) throws BadInputException {
+        if (getAddedNfaStates(root, maxRepetitionExpansion) > maxRepetitionExpansion) {
+            throw new BadInputException("Counted repetitions add more than " + maxRepetitionExpansion + " states to the NFA once they are expanded");
+        }
+    }
 
-                if (i == symbols.size() - 1 && openedAtBeginning) {
-                    symbols.removeFirst();
-                    symbols.removeLast();
-                    i = -1;
+    // a single pass of the shunting-yard algorithm: operands and pending operators are kept on explicit stacks,
+    // implicit concatenations are inserted on the fly; binary operators are right-associative
+    private static Node createNode(ArrayList<Symbol> symbols) throws BadInputException, FlawedLogicException {
+        ArrayDeque<Node> operands = new ArrayDeque<>();
+        ArrayDeque<Symbol> operators = new ArrayDeque<>(); // binary operators and opening brackets
+        boolean expectingOperand = true;
+        boolean afterUnaryOperator = false;
+
+        for (Symbol currentSymbol : symbols) {
+            if (currentSymbol.isUnaryOperator()) {
+                // a unary operator needs an operand to the left, and it can't be applied twice in a row
+                if (expectingOperand || afterUnaryOperator) {
+                    throw new BadInputException("Invalid regex");
                 }
 
+                ArrayList<Node> children = new ArrayList<>();
+                children.add(operands.pop());
+                operands.push(new Node(currentSymbol, children));
+                afterUnaryOperator = true;
                 continue;
             }
 
-            if (currentSymbol.isOperator()) {
-                if (operatorIndex == -1) {
-                    operatorIndex = i;
+            afterUnaryOperator = false;
+
+            if (currentSymbol.isBinaryOperator()) {
+                if (expectingOperand) {
+                    throw new BadInputException("Invalid regex");
+                }
+
+                pushOperator(currentSymbol, operators, operands);
+                expectingOperand = true;
+
+            } else if (currentSymbol.isClosingBracket()) {
+                if (expectingOperand) {
+                    throw new BadInputException("Invalid regex");
+                }
+
+                while (!operators.isEmpty() && !operators.peek().isOpeningBracket()) {
+                    applyOperator(operators.pop(), operands);
+                }
+
+                if (operators.isEmpty()) {
+                    throw new BadInputException("Invalid regex");
+                }
+
+                operators.pop();
+
+            } else { // a character or an opening bracket, i.e. the start of an operand
+                if (!expectingOperand) {
+                    pushOperator(new Symbol(Symbol.CONCATENATION_SYMBOL, "operator"), operators, operands);
+                }
+
+                if (currentSymbol.isOpeningBracket()) {
+                    operators.push(currentSymbol);
+                    expectingOperand = true;
                 } else {
-                    boolean higherPriority = currentSymbol.getPriority() > symbols.get(operatorIndex).getPriority();
-                    operatorIndex = higherPriority ? i : operatorIndex;
+                    operands.push(new Node(currentSymbol));
+                    expectingOperand = false;
                 }
             }
         }
 
-        if (operatorIndex == -1) { // this can either mean an invalid regex or that we're left with a single character i.e. a leaf
-            if (symbols.size() != 1) {
+        if (expectingOperand) {
+            throw new BadInputException("Invalid regex");
+        }
+
+        while (!operators.isEmpty()) {
+            if (operators.peek().isOpeningBracket()) {
                 throw new BadInputException("Invalid regex");
             }
 
-            return new Node(symbols.get(0));
+            applyOperator(operators.pop(), operands);
         }
 
-        Symbol op = symbols.get(operatorIndex);
+        return operands.pop();
+    }
 
-        if (op.isUnaryOperator() && operatorIndex != symbols.size() - 1) { // a unary operator can only have symbols to the left
-            throw new BadInputException("Invalid regex");
+    // applies the pending operators that bind tighter (a lower priority value) than the new one
+    private static void pushOperator(Symbol operator, ArrayDeque<Symbol> operators, ArrayDeque<Node> operands) throws FlawedLogicException {
+        while (!operators.isEmpty() && operators.peek().isOperator() && operators.peek().getPriority() < operator.getPriority()) {
+            applyOperator(operators.pop(), operands);
         }
 
-        ArrayList<Node> children = new ArrayList<>();
-        LinkedList<Symbol> leftChild = new LinkedList<>(symbols.subList(0, operatorIndex)); // symbols to the left of the operator
-        children.add(createNode(leftChild)); // here recursion happens
-
-        if (op.isBinaryOperator()) { // a binary operator (unlike unary) also has symbols to the right
-            LinkedList<Symbol> rightChild = new LinkedList<>(symbols.subList(operatorIndex + 1, symbols.size()));
-            children.add(createNode(rightChild)); // here recursion happens
-        }
+        operators.push(operator);
+    }
 
-        return new Node(op, children);
+    private static void applyOperator(Symbol operator, ArrayDeque<Node> operands) {
+        ArrayList<Node> children = new ArrayList<>();
+        Node right = operands.pop();
+        children.add(operands.pop());
+        children.add(right);
+        operands.push(new Node(operator, children));
     }
 
-    // wraps symbols into Symbol objects, determining their type; correctly handles escaped symbols
-    private static LinkedList<Symbol> makeSymbolList(String regex) throws BadInputException, FlawedLogicException {
-        LinkedList<Symbol> symbols = new LinkedList<>();
+    // wraps symbols into Symbol objects, determining their type; correctly handles escaped symbols and character classes
+    private static ArrayList<Symbol> makeSymbolList(String regex) throws BadInputException, FlawedLogicException {
+        ArrayList<Symbol> symbols = new ArrayList<>(regex.length());
 
         for (int i = 0; i < regex.length(); i++) {
             char currentChar = regex.charAt(i);
@@ -94,20 +149,49 @@ public class TreeHelper {
 
                 char nextChar = regex.charAt(i + 1);
 
-                // the only symbols that can be escaped are operators, brackets and backslash itself
-                if (!Symbol.isOperator(nextChar) && nextChar != '(' && nextChar != ')' && nextChar != '\\') {
+                // the only symbols that can be escaped are operators, brackets, the wildcard and backslash itself
+                if (!Symbol.isOperator(nextChar) && !isBracket(nextChar) && nextChar != '.' && nextChar != '\\') {
                     throw new BadInputException("Invalid regex");
                 }
 
                 symbols.add(new Symbol(nextChar, "character"));
                 i++;
 
+            } else if (currentChar == Symbol.REPETITION_SYMBOL) {
+                int end = regex.indexOf('}', i);
+
+                if (end == -1) {
+                    throw new BadInputException("Invalid regex");
+                }
+
+                symbols.add(makeRepetition(regex, i, end));
+                i = end;
+
             } else if (Symbol.isOperator(currentChar)) {
                 symbols.add(new Symbol(currentChar, "operator"));
 
             } else if (currentChar == '(' || currentChar == ')') {
                 symbols.add(new Symbol(currentChar, "bracket"));
 
+            } else if (currentChar == '[') {
+                int end = findClassEnd(regex, i);
+                symbols.add(makeClass(regex, i, end));
+                i = end;
+
+            } else if (currentChar == ']') { // a class that was never opened
+                throw new BadInputException("Invalid regex");
+
+            } else if (currentChar == '.') { // any char at all
+                symbols.add(new Symbol(new char[]{Character.MIN_VALUE, Character.MAX_VALUE}, new int[]{0, Character.MAX_CODE_POINT}, ".", true));
+
+            } else if (Character.isHighSurrogate(currentChar) && i + 1 < regex.length() && Character.isLowSurrogate(regex.charAt(i + 1))) {
+                // a supplementary code point is grouped, so that operators apply to all of it, as in java.util.regex,
+                // and Utf8Helper can encode it as a whole
+                symbols.add(new Symbol('(', "bracket"));
+                symbols.add(new Symbol(currentChar, "character"));
+                symbols.add(new Symbol(regex.charAt(++i), "character"));
+                symbols.add(new Symbol(')', "bracket"));
+
             } else {
                 symbols.add(new Symbol(currentChar, "character"));
             }
@@ -116,73 +200,414 @@ public class TreeHelper {
         return symbols;
     }
 
-    private static void preprocess(LinkedList<Symbol> symbols) throws BadInputException, FlawedLogicException {
-        // removes empty brackets
-        for (int i = 0; i < symbols.size() - 1; i++) {
-            Symbol currentSymbol = symbols.get(i);
-            Symbol nextSymbol = symbols.get(i + 1);
+    // {n}, {m,n} and {m,}; counts too large for an int are cut to Integer.MAX_VALUE, they are over any expansion limit anyway
+    private static Symbol makeRepetition(String regex, int start, int end) throws BadInputException, FlawedLogicException {
+        int comma = regex.indexOf(',', start);
+        boolean hasComma = comma != -1 && comma < end;
+        int minCount = parseCount(regex, start + 1, hasComma ? comma : end);
+        int maxCount = !hasComma ? minCount : comma + 1 == end ? Symbol.UNBOUNDED : parseCount(regex, comma + 1, end);
 
-            if (currentSymbol.isOpeningBracket() && nextSymbol.isClosingBracket()) {
-                symbols.remove(i);
-                symbols.remove(i);
+        if (maxCount != Symbol.UNBOUNDED && maxCount < minCount) {
+            throw new BadInputException("Invalid regex");
+        }
 
-                if (i >= symbols.size()) {
-                    break;
-                }
+        return new Symbol(minCount, maxCount, regex.substring(start, end + 1));
+    }
+
+    private static int parseCount(String regex, int start, int end) throws BadInputException {
+        if (start == end) {
+            throw new BadInputException("Invalid regex");
+        }
+
+        long count = 0;
+
+        for (int i = start; i < end; i++) {
+            char ch = regex.charAt(i);
+
+            if (ch < '0' || ch > '9') {
+                throw new BadInputException("Invalid regex");
+            }
+
+            count = Math.min(count * 10 + (ch - '0'), Integer.MAX_VALUE);
+        }
+
+        return (int) count;
+    }
+
+    private static boolean isBracket(char ch) {
+        return ch == '(' || ch == ')' || ch == '[' || ch == ']' || ch == '{' || ch == '}';
+    }
+
+    // the index of the unescaped ']' closing the class that starts at start
+    private static int findClassEnd(String regex, int start) throws BadInputException {
+        for (int i = start + 1; i < regex.length(); i++) {
+            if (regex.charAt(i) == '\\') {
+                i++;
+            } else if (regex.charAt(i) == ']') {
+                return i;
+            }
+        }
+
+        throw new BadInputException("Invalid regex");
+    }
 
-                i = symbols.get(i).isClosingBracket() ? (i - 2) : (i - 1);
+    // [abc], [a-z0-9], [^ab] and the like; inside a class only '\', '[', ']', '^' and '-' can be escaped,
+    // '-' is a literal if it can't be a range, and '^' only negates the class right after '['
+    // the class is read as code points, so that a surrogate pair is a single member; the char engines get the surrogates
+    // it's written with instead (see toCharRanges), while Utf8Helper encodes the code points themselves
+    private static Symbol makeClass(String regex, int start, int end) throws BadInputException, FlawedLogicException {
+        boolean isNegated = start + 1 < end && regex.charAt(start + 1) == '^';
+        int i = isNegated ? start + 2 : start + 1;
+        ArrayList<int[]> ranges = new ArrayList<>();
+
+        if (i == end) { // [] and [^] are most likely typos, so they aren't considered empty and full classes
+            throw new BadInputException("Invalid regex");
+        }
 
-                if (i < 0) {
+        while (i < end) {
+            int from = regex.codePointAt(i);
+
+            if (from == '\\') {
+                from = unescapeInClass(regex.charAt(++i));
+            }
+
+            int to = from;
+            i += Character.charCount(from);
+
+            if (i + 1 < end && regex.charAt(i) == '-') {
+                to = regex.codePointAt(i + 1);
+
+                if (to == '\\') {
+                    to = unescapeInClass(regex.charAt(i + 2));
+                    i++;
+                }
+
+                if (to < from) {
                     throw new BadInputException("Invalid regex");
                 }
+
+                i += 1 + Character.charCount(to);
             }
+
+            ranges.add(new int[]{from, to});
         }
 
-        // inserts implicit concatenation operators
-        for (int i = 0; i < symbols.size() - 1; i++) {
-            Symbol currentSymbol = symbols.get(i);
-            Symbol nextSymbol = symbols.get(i + 1);
+        int[] codePointRanges = normalize(ranges);
+        int[] charRanges = toCharRanges(codePointRanges);
 
-            if (currentSymbol.isBinaryOperator() || currentSymbol.isOpeningBracket()) {
-                continue;
+        if (isNegated) {
+            codePointRanges = complement(codePointRanges, Character.MAX_CODE_POINT);
+            charRanges = complement(charRanges, Character.MAX_VALUE);
+        }
+
+        char[] chars = new char[charRanges.length];
+
+        for (int j = 0; j < charRanges.length; j++) {
+            chars[j] = (char) charRanges[j];
+        }
+
+        return new Symbol(chars, codePointRanges, regex.substring(start, end + 1), isNegated);
+    }
+
+    // the chars of the normalized code point ranges: supplementary code points are split into the surrogates they're written with
+    private static int[] toCharRanges(int[] codePointRanges) {
+        ArrayList<int[]> ranges = new ArrayList<>();
+
+        for (int i = 0; i < codePointRanges.length; i += 2) {
+            int from = codePointRanges[i];
+            int to = codePointRanges[i + 1];
+
+            if (from <= Character.MAX_VALUE) {
+                ranges.add(new int[]{from, Math.min(to, Character.MAX_VALUE)});
+                from = Character.MIN_SUPPLEMENTARY_CODE_POINT;
             }
 
-            if (nextSymbol.isOperator() || nextSymbol.isClosingBracket()) {
+            if (to < from) {
                 continue;
             }
 
-            symbols.add(i + 1, new Symbol(Symbol.CONCATENATION_SYMBOL, "operator"));
-            i++;
+            char highFrom = Character.highSurrogate(from);
+            char highTo = Character.highSurrogate(to);
+            ranges.add(new int[]{highFrom, highTo});
+
+            if (highFrom == highTo) {
+                ranges.add(new int[]{Character.lowSurrogate(from), Character.lowSurrogate(to)});
+            } else { // every low surrogate that follows one of the high ones
+                ranges.add(new int[]{Character.lowSurrogate(from), Character.MAX_LOW_SURROGATE});
+                ranges.add(new int[]{Character.MIN_LOW_SURROGATE, Character.lowSurrogate(to)});
+            }
+        }
+
+        return normalize(ranges);
+    }
+
+    private static char unescapeInClass(char ch) throws BadInputException {
+        if (ch != '\\' && ch != '[' && ch != ']' && ch != '^' && ch != '-') {
+            throw new BadInputException("Invalid regex");
         }
+
+        return ch;
     }
 
-    private static int skipToClosingBracket(LinkedList<Symbol> symbols, int i) throws BadInputException {
-        // every opening bracket pushes an item to the stack, every closing pops it; by the outer closing bracket the stack should become empty
-        Stack<Character> brackets = new Stack<>();
-        brackets.push('(');
-        i++;
+    // sorts the ranges and merges the overlapping or adjacent ones
+    private static int[] normalize(ArrayList<int[]> ranges) {
+        Collections.sort(ranges, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] r1, int[] r2) {
+                return r1[0] - r2[0];
+            }
+        });
 
-        while (brackets.size() > 0 && i < symbols.size()) {
-            Symbol currentSymbol = symbols.get(i);
+        int[] result = new int[ranges.size() * 2];
+        int count = 0;
 
-            if (currentSymbol.isOpeningBracket()) {
-                brackets.push('(');
+        for (int[] range : ranges) {
+            if (count > 0 && range[0] <= result[count - 1] + 1) {
+                result[count - 1] = Math.max(result[count - 1], range[1]);
+            } else {
+                result[count++] = range[0];
+                result[count++] = range[1];
             }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
 
-            if (currentSymbol.isClosingBracket()) {
-                brackets.pop();
+    // the values up to maxValue the normalized ranges don't contain; throws if there are none
+    private static int[] complement(int[] ranges, int maxValue) throws BadInputException {
+        int[] result = new int[ranges.length + 2];
+        int count = 0;
+        int next = 0; // the first value that isn't covered by the ranges yet
+
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                result[count++] = next;
+                result[count++] = ranges[i] - 1;
             }
 
-            i++;
+            next = ranges[i + 1] + 1;
         }
 
-        if (brackets.size() != 0) {
-            throw new BadInputException("Invalid regex");
-        } else if (i < symbols.size() && symbols.get(i).isClosingBracket()) {
+        if (next <= maxValue) {
+            result[count++] = next;
+            result[count++] = maxValue;
+        }
+
+        if (count == 0) { // a class that can't match anything
             throw new BadInputException("Invalid regex");
         }
 
-        return i - 1;
+        return Arrays.copyOf(result, count);
+    }
+
+    // drops empty brackets, including nested ones like (()), as if they weren't there
+    private static ArrayList<Symbol> removeEmptyBrackets(ArrayList<Symbol> symbols) {
+        ArrayList<Symbol> result = new ArrayList<>(symbols.size());
+
+        for (Symbol currentSymbol : symbols) {
+            if (currentSymbol.isClosingBracket() && !result.isEmpty() && result.get(result.size() - 1).isOpeningBracket()) {
+                result.remove(result.size() - 1);
+            } else {
+                result.add(currentSymbol);
+            }
+        }
+
+        return result;
+    }
+
+    // the tree of a regex matching the reversed strings: concatenations get their operands swapped
+    // iterative post-order traversal, since trees of long regexes are too deep for recursion
+    public static Node reverse(Node root) {
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Node> reversedNodes = new ArrayDeque<>();
+        nodes.push(root);
+
+        // first pass: every node goes after its children in the list
+        ArrayList<Node> postOrder = new ArrayList<>();
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            postOrder.add(node);
+
+            for (Node child : node.getChildren()) {
+                nodes.push(child);
+            }
+        }
+
+        // second pass, backwards: children are reversed before their parents
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Node node = postOrder.get(i);
+
+            if (node.getChildren().isEmpty()) {
+                reversedNodes.push(node);
+                continue;
+            }
+
+            // the reversed children come off the stack right to left
+            ArrayList<Node> children = new ArrayList<>();
+
+            for (int j = 0; j < node.getChildren().size(); j++) {
+                children.add(reversedNodes.pop());
+            }
+
+            if (node.getSymbol().toChar() != Symbol.CONCATENATION_SYMBOL) {
+                Collections.reverse(children);
+            }
+
+            reversedNodes.push(new Node(node.getSymbol(), children));
+        }
+
+        return reversedNodes.pop();
+    }
+
+    // the number of NFA states counted repetitions add, i.e. how many more states NfaHelper.buildNfa makes for the tree than it would
+    // if every repetition was x{1}: a concatenation makes a state, * and + make two, x{m,n} makes x's states n times and a state between
+    // every two copies, x{m,} makes m-1 copies and a loop; it's the states rather than the nodes, since determinization cost grows with them
+    // (the ε-closures of (a?){n} take them all in); it stops growing past limit
+    public static long getAddedNfaStates(Node root, long limit) {
+        if (root.getSymbol() == null) {
+            return 0;
+        }
+
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<long[]> counts = new ArrayDeque<>(); // {states, states if every repetition was x{1}}
+        ArrayList<Node> postOrder = new ArrayList<>();
+        nodes.push(root);
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            postOrder.add(node);
+
+            for (Node child : node.getChildren()) {
+                nodes.push(child);
+            }
+        }
+
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Node node = postOrder.get(i);
+            Symbol symbol = node.getSymbol();
+            long states = 0;
+            long plainStates = 0;
+
+            for (int j = 0; j < node.getChildren().size(); j++) {
+                long[] childCounts = counts.pop();
+                states += childCounts[0];
+                plainStates += childCounts[1];
+            }
+
+            if (symbol.isRepetition()) {
+                boolean isUnbounded = symbol.getMaxCount() == Symbol.UNBOUNDED;
+                long copies = isUnbounded ? Math.max(symbol.getMinCount() - 1, 0) : symbol.getMaxCount();
+                long bound = plainStates + limit + 1;
+                // x{m,n} takes copies * (states + 1) - 1, and x{m,} takes 2 + states more; checked first, since the product can overflow
+                long chainStates = copies == 0 ? 0 : states + 1 > bound / copies ? bound : copies * (states + 1) - (isUnbounded ? 0 : 1);
+                states = isUnbounded ? chainStates + states + 2 : chainStates;
+            } else if (symbol.toChar() == Symbol.CONCATENATION_SYMBOL && symbol.isOperator()) {
+                states++;
+                plainStates++;
+            } else if ((symbol.toChar() == '*' || symbol.toChar() == '+') && symbol.isOperator()) {
+                states += 2;
+                plainStates += 2;
+            }
+
+            counts.push(new long[]{Math.min(states, plainStates + limit + 1), plainStates});
+        }
+
+        long[] rootCounts = counts.pop();
+
+        return Math.max(rootCounts[0] - rootCounts[1], 0);
+    }
+
+    // the tree with every counted repetition written out with the other operators: x{2,4} becomes x·x·(x·x?)?, x{2,} becomes x·x+,
+    // and x{0} is left as it is, since there's no node for the empty string; the copies of x are the same node, so the result is a DAG
+    // rather than a tree, that only gets as large as its copies once it's traversed; the traversal of whatever reads it does the copying
+    public static Node expandRepetitions(Node root) throws FlawedLogicException {
+        if (root.getSymbol() == null) {
+            return root;
+        }
+
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Node> expandedNodes = new ArrayDeque<>();
+        ArrayList<Node> postOrder = new ArrayList<>();
+        nodes.push(root);
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            postOrder.add(node);
+
+            for (Node child : node.getChildren()) {
+                nodes.push(child);
+            }
+        }
+
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Node node = postOrder.get(i);
+
+            if (node.getChildren().isEmpty()) {
+                expandedNodes.push(node);
+                continue;
+            }
+
+            // the expanded children come off the stack right to left
+            ArrayList<Node> children = new ArrayList<>();
+
+            for (int j = 0; j < node.getChildren().size(); j++) {
+                children.add(expandedNodes.pop());
+            }
+
+            Collections.reverse(children);
+            Symbol symbol = node.getSymbol();
+
+            if (!symbol.isRepetition() || symbol.getMaxCount() == 0) {
+                expandedNodes.push(new Node(symbol, children));
+                continue;
+            }
+
+            Node child = children.get(0);
+            Node expanded;
+            int minCount = symbol.getMinCount();
+
+            if (symbol.getMaxCount() == Symbol.UNBOUNDED) {
+                expanded = minCount == 0 ? join('*', child) : join('+', child);
+                minCount = Math.max(minCount - 1, 0);
+            } else {
+                expanded = null;
+
+                // the optional copies are nested, so that each of them can only follow the previous one
+                for (int j = minCount; j < symbol.getMaxCount(); j++) {
+                    expanded = join('?', expanded == null ? child : join(Symbol.CONCATENATION_SYMBOL, child, expanded));
+                }
+            }
+
+            for (int j = 0; j < minCount; j++) {
+                expanded = expanded == null ? child : join(Symbol.CONCATENATION_SYMBOL, child, expanded);
+            }
+
+            expandedNodes.push(expanded);
+        }
+
+        return expandedNodes.pop();
+    }
+
+    private static Node join(char operator, Node... operands) throws FlawedLogicException {
+        return new Node(new Symbol(operator, "operator"), new ArrayList<>(Arrays.asList(operands)));
+    }
+
+    public static int countNodes(Node root) {
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        nodes.push(root);
+        int count = 0;
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            count++;
+
+            for (Node child : node.getChildren()) {
+                nodes.push(child);
+            }
+        }
+
+        return count;
     }
 
     public static void printTree(Node node) {
@@ -0,0 +1,222 @@
+package me.gorky.automata.regex;
+
+import me.gorky.automata.regex.exceptions.BadInputException;
+import me.gorky.automata.regex.exceptions.FlawedLogicException;
+import me.gorky.automata.regex.structures.Node;
+import me.gorky.automata.regex.structures.Symbol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// lowers a syntax tree from chars to the bytes of their UTF-8 encoding, so that automata can run over raw bytes (as chars 0-255)
+// without decoding them; every operand becomes an alternation of byte sequences, as in RE2 and Rust's utf8-ranges
+// operands match code points, as in java.util.regex: a supplementary one (4 bytes) is matched by ., by negated classes such as [^a]
+// and by the classes it's written in, since a surrogate pair written in the regex is encoded as its code point, inside a class or not;
+// lone surrogates never match anything, since they can't be encoded
+public class Utf8Helper {
+
+    private static final int[] MAX_CODE_POINTS = {0x7F, 0x7FF, 0xFFFF}; // the largest code points of 1, 2 and 3 bytes
+
+    // iterative post-order traversal, since trees of long regexes are too deep for recursion
+    public static Node lower(Node root) throws BadInputException, FlawedLogicException {
+        if (root.getSymbol() == null) {
+            return root;
+        }
+
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Node> loweredNodes = new ArrayDeque<>();
+        ArrayList<Node> postOrder = new ArrayList<>();
+        nodes.push(root);
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            postOrder.add(node);
+
+            if (isSurrogatePair(node)) { // lowered as a whole, its surrogates can't be encoded on their own
+                continue;
+            }
+
+            for (Node child : node.getChildren()) {
+                nodes.push(child);
+            }
+        }
+
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Node node = postOrder.get(i);
+
+            if (isSurrogatePair(node)) {
+                int codePoint = Character.toCodePoint(node.getChildren().get(0).getSymbol().toChar(), node.getChildren().get(1).getSymbol().toChar());
+                List<char[]> sequences = new ArrayList<>();
+                encode(codePoint, codePoint, sequences);
+                loweredNodes.push(lowerSequences(sequences));
+                continue;
+            }
+
+            if (node.getChildren().isEmpty()) {
+                loweredNodes.push(lowerOperand(node.getSymbol()));
+                continue;
+            }
+
+            // the lowered children come off the stack right to left
+            ArrayList<Node> children = new ArrayList<>();
+
+            for (int j = 0; j < node.getChildren().size(); j++) {
+                children.add(loweredNodes.pop());
+            }
+
+            Collections.reverse(children);
+            loweredNodes.push(new Node(node.getSymbol(), children));
+        }
+
+        return loweredNodes.pop();
+    }
+
+    private static Node lowerOperand(Symbol operand) throws BadInputException, FlawedLogicException {
+        List<char[]> sequences = encode(operand.getCodePointRanges());
+
+        if (sequences.isEmpty()) { // nothing but lone surrogates
+            throw new BadInputException("Invalid regex for UTF-8 matching");
+        }
+
+        return lowerSequences(sequences);
+    }
+
+    // an alternation of concatenations, one per byte sequence
+    private static Node lowerSequences(List<char[]> sequences) throws FlawedLogicException {
+        Node alternation = null;
+
+        for (int i = sequences.size() - 1; i >= 0; i--) {
+            char[] sequence = sequences.get(i);
+            Node concatenation = null;
+
+            for (int j = sequence.length - 2; j >= 0; j -= 2) {
+                Node byteNode = new Node(new Symbol(new char[]{sequence[j], sequence[j + 1]}, describe(sequence[j], sequence[j + 1])));
+                concatenation = concatenation == null ? byteNode : join(Symbol.CONCATENATION_SYMBOL, byteNode, concatenation);
+            }
+
+            alternation = alternation == null ? concatenation : join('|', concatenation, alternation);
+        }
+
+        return alternation;
+    }
+
+    // the concatenation TreeHelper groups the surrogates of a supplementary code point into
+    private static boolean isSurrogatePair(Node node) {
+        if (node.getSymbol() == null || node.getSymbol().toChar() != Symbol.CONCATENATION_SYMBOL || !node.getSymbol().isOperator()) {
+            return false;
+        }
+
+        Symbol high = node.getChildren().get(0).getSymbol();
+        Symbol low = node.getChildren().get(1).getSymbol();
+
+        return node.getChildren().get(0).getChildren().isEmpty() && !high.isClass() && Character.isHighSurrogate(high.toChar())
+                && node.getChildren().get(1).getChildren().isEmpty() && !low.isClass() && Character.isLowSurrogate(low.toChar());
+    }
+
+    private static Node join(char operator, Node left, Node right) throws FlawedLogicException {
+        ArrayList<Node> children = new ArrayList<>();
+        children.add(left);
+        children.add(right);
+        return new Node(new Symbol(operator, "operator"), children);
+    }
+
+    private static String describe(char from, char to) {
+        return from == to ? String.format("\\x%02X", (int) from) : String.format("[\\x%02X-\\x%02X]", (int) from, (int) to);
+    }
+
+    // the byte sequences the code points of the ranges (as in Symbol.getCodePointRanges()) are encoded with, in ascending order,
+    // leaving out the surrogates; every sequence is made of byte ranges, given as from-to pairs
+    public static List<char[]> encode(int[] ranges) {
+        List<char[]> sequences = new ArrayList<>();
+
+        for (int i = 0; i < ranges.length; i += 2) {
+            int from = ranges[i];
+            int to = ranges[i + 1];
+
+            if (from < Character.MIN_SURROGATE) {
+                encode(from, Math.min(to, Character.MIN_SURROGATE - 1), sequences);
+            }
+
+            if (to > Character.MAX_SURROGATE) {
+                encode(Math.max(from, Character.MAX_SURROGATE + 1), to, sequences);
+            }
+        }
+
+        return sequences;
+    }
+
+    // splits the range until every part has the same length of encoding and is a product of byte ranges;
+    // pending parts are kept on a stack, the lower one on top, so that the sequences come out in ascending order
+    private static void encode(int from, int to, List<char[]> sequences) {
+        ArrayDeque<int[]> parts = new ArrayDeque<>();
+        parts.push(new int[]{from, to});
+
+        while (!parts.isEmpty()) {
+            int[] part = parts.pop();
+            int[] split = split(part[0], part[1]);
+
+            if (split != null) {
+                parts.push(new int[]{split[2], split[3]});
+                parts.push(new int[]{split[0], split[1]});
+                continue;
+            }
+
+            byte[] low = toUtf8(part[0]);
+            byte[] high = toUtf8(part[1]);
+            char[] sequence = new char[low.length * 2];
+
+            for (int i = 0; i < low.length; i++) {
+                sequence[i * 2] = (char) (low[i] & 0xFF);
+                sequence[i * 2 + 1] = (char) (high[i] & 0xFF);
+            }
+
+            sequences.add(sequence);
+        }
+    }
+
+    // the two halves of the range if it has to be split, null otherwise
+    private static int[] split(int from, int to) {
+        for (int max : MAX_CODE_POINTS) {
+            if (from <= max && to > max) {
+                return new int[]{from, max, max + 1, to};
+            }
+        }
+
+        if (to <= MAX_CODE_POINTS[0]) {
+            return null;
+        }
+
+        // from the last continuation byte on: the bytes past the first one that differs have to span all of their values
+        for (int i = 1; i < 4; i++) {
+            int mask = (1 << (6 * i)) - 1;
+
+            if ((from & ~mask) != (to & ~mask)) {
+                if ((from & mask) != 0) {
+                    return new int[]{from, from | mask, (from | mask) + 1, to};
+                }
+
+                if ((to & mask) != mask) {
+                    return new int[]{from, (to & ~mask) - 1, to & ~mask, to};
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static byte[] toUtf8(int codePoint) {
+        if (codePoint <= MAX_CODE_POINTS[0]) {
+            return new byte[]{(byte) codePoint};
+        } else if (codePoint <= MAX_CODE_POINTS[1]) {
+            return new byte[]{(byte) (0xC0 | codePoint >> 6), (byte) (0x80 | codePoint & 0x3F)};
+        } else if (codePoint <= MAX_CODE_POINTS[2]) {
+            return new byte[]{(byte) (0xE0 | codePoint >> 12), (byte) (0x80 | codePoint >> 6 & 0x3F), (byte) (0x80 | codePoint & 0x3F)};
+        } else {
+            return new byte[]{(byte) (0xF0 | codePoint >> 18), (byte) (0x80 | codePoint >> 12 & 0x3F), (byte) (0x80 | codePoint >> 6 & 0x3F),
+                    (byte) (0x80 | codePoint & 0x3F)};
+        }
+    }
+
+}
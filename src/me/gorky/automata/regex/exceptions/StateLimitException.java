@@ -0,0 +1,12 @@
+package me.gorky.automata.regex.exceptions;
+
+public class StateLimitException extends Exception {
+
+    public StateLimitException() {
+        super();
+    }
+
+    public StateLimitException(String message) {
+        super(message);
+    }
+}
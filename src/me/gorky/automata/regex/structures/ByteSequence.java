@@ -0,0 +1,82 @@
+package me.gorky.automata.regex.structures;
+
+import java.nio.ByteBuffer;
+
+// bytes seen as chars 0-255, one per byte, for the automata lowered to UTF-8 (see Utf8Helper); nothing is copied or decoded
+// a ByteBuffer is read with absolute gets, so its position isn't moved, and direct buffers work just as heap ones do
+public class ByteSequence implements CharSequence {
+
+    private final byte[] array; // null for buffers
+
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private final int length;
+
+    public ByteSequence(byte[] array) {
+        this(array, 0, array.length);
+    }
+
+    public ByteSequence(byte[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > array.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + array.length);
+        }
+
+        this.array = array;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // the bytes from the buffer's position to its limit
+    public ByteSequence(ByteBuffer buffer) {
+        this.array = null;
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        this.length = buffer.remaining();
+    }
+
+    private ByteSequence(byte[] array, ByteBuffer buffer, int offset, int length) {
+        this.array = array;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+
+        return (char) ((array != null ? array[offset + index] : buffer.get(offset + index)) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+
+        return new ByteSequence(array, buffer, offset + start, end - start);
+    }
+
+    // the bytes as Latin-1 chars, for debugging
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            sb.append(charAt(i));
+        }
+
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,209 @@
+package me.gorky.automata.regex.structures;
+
+import java.util.*;
+
+// splits the whole char space into disjoint classes, so that automata can store transitions per class instead of per character
+public class CharClassMap {
+
+    private static final int LATIN_SIZE = 256; // Latin-1, which covers every byte as well
+
+    private final char[] rangeStarts; // sorted, the first range always starts at '\u0000'
+
+    private final int[] rangeClasses;
+
+    private final char[] representatives;
+
+    private final int[] latinClasses; // shortcut for the most common chars and for bytes, so that they don't need a binary search
+
+    public CharClassMap(char[] rangeStarts, int[] rangeClasses, char[] representatives) {
+        this.rangeStarts = rangeStarts;
+        this.rangeClasses = rangeClasses;
+        this.representatives = representatives;
+        this.latinClasses = new int[LATIN_SIZE];
+
+        for (int ch = 0; ch < LATIN_SIZE; ch++) {
+            latinClasses[ch] = lookUp((char) ch);
+        }
+    }
+
+    // every letter gets a class of its own, the rest of the chars share a single class
+    public static CharClassMap fromLetters(Collection<Character> letters) {
+        TreeSet<Character> sortedLetters = new TreeSet<>();
+
+        for (Character letter : letters) {
+            if (letter != null) {
+                sortedLetters.add(letter);
+            }
+        }
+
+        int otherClass = sortedLetters.size();
+        char[] rangeStarts = new char[sortedLetters.size() * 2 + 1];
+        int[] rangeClasses = new int[rangeStarts.length];
+        char[] representatives = new char[sortedLetters.size() + 1];
+        int rangeCount = 0;
+        int letterClass = 0;
+        int next = 0; // the first char that isn't covered by the ranges yet
+        int otherRepresentative = -1;
+
+        for (char letter : sortedLetters) {
+            if (letter > next) {
+                rangeStarts[rangeCount] = (char) next;
+                rangeClasses[rangeCount++] = otherClass;
+                otherRepresentative = otherRepresentative == -1 ? next : otherRepresentative;
+            }
+
+            rangeStarts[rangeCount] = letter;
+            rangeClasses[rangeCount++] = letterClass;
+            representatives[letterClass++] = letter;
+            next = letter + 1;
+        }
+
+        if (next <= Character.MAX_VALUE) {
+            rangeStarts[rangeCount] = (char) next;
+            rangeClasses[rangeCount++] = otherClass;
+            otherRepresentative = otherRepresentative == -1 ? next : otherRepresentative;
+        }
+
+        if (otherRepresentative == -1) { // the letters cover the whole char space, so there are no other chars
+            representatives = Arrays.copyOf(representatives, otherClass);
+        } else {
+            representatives[otherClass] = (char) otherRepresentative;
+        }
+
+        return new CharClassMap(Arrays.copyOf(rangeStarts, rangeCount), Arrays.copyOf(rangeClasses, rangeCount), representatives);
+    }
+
+    // the coarsest partition in which every set of ranges is a union of classes: two chars share a class
+    // if and only if every set contains either both of them or neither; sets are given as in Symbol.getRanges()
+    public static CharClassMap fromRanges(Collection<char[]> rangeSets) {
+        Set<String> distinctSets = new LinkedHashSet<>(); // the same literal tends to appear many times
+
+        for (char[] ranges : rangeSets) {
+            distinctSets.add(new String(ranges));
+        }
+
+        // elementary intervals: every range starts one and ends right before another
+        TreeSet<Integer> bounds = new TreeSet<>();
+        bounds.add((int) Character.MIN_VALUE);
+
+        for (String ranges : distinctSets) {
+            for (int i = 0; i < ranges.length(); i += 2) {
+                bounds.add((int) ranges.charAt(i));
+                bounds.add(ranges.charAt(i + 1) + 1);
+            }
+        }
+
+        bounds.remove(Character.MAX_VALUE + 1);
+        int[] intervalStarts = new int[bounds.size()];
+        BitSet[] signatures = new BitSet[bounds.size()]; // the sets every interval belongs to
+        int intervalCount = 0;
+
+        for (int bound : bounds) {
+            signatures[intervalCount] = new BitSet();
+            intervalStarts[intervalCount++] = bound;
+        }
+
+        int setId = 0;
+
+        for (String ranges : distinctSets) {
+            for (int i = 0; i < ranges.length(); i += 2) {
+                int from = Arrays.binarySearch(intervalStarts, ranges.charAt(i));
+                int to = ranges.charAt(i + 1) == Character.MAX_VALUE ? intervalCount : Arrays.binarySearch(intervalStarts, ranges.charAt(i + 1) + 1);
+
+                for (int interval = from; interval < to; interval++) {
+                    signatures[interval].set(setId);
+                }
+            }
+
+            setId++;
+        }
+
+        // classes are numbered in the order of their smallest chars; adjacent intervals of the same class are merged
+        Map<BitSet, Integer> classIds = new HashMap<>();
+        char[] rangeStarts = new char[intervalCount];
+        int[] rangeClasses = new int[intervalCount];
+        char[] representatives = new char[intervalCount];
+        int rangeCount = 0;
+
+        for (int interval = 0; interval < intervalCount; interval++) {
+            Integer charClass = classIds.get(signatures[interval]);
+
+            if (charClass == null) {
+                charClass = classIds.size();
+                classIds.put(signatures[interval], charClass);
+                representatives[charClass] = (char) intervalStarts[interval];
+            }
+
+            if (rangeCount == 0 || rangeClasses[rangeCount - 1] != charClass) {
+                rangeStarts[rangeCount] = (char) intervalStarts[interval];
+                rangeClasses[rangeCount++] = charClass;
+            }
+        }
+
+        return new CharClassMap(Arrays.copyOf(rangeStarts, rangeCount), Arrays.copyOf(rangeClasses, rangeCount), Arrays.copyOf(representatives, classIds.size()));
+    }
+
+    public int classOf(char ch) {
+        return ch < LATIN_SIZE ? latinClasses[ch] : lookUp(ch);
+    }
+
+    public int getClassCount() {
+        return representatives.length;
+    }
+
+    // the smallest char of the class
+    public char getRepresentative(int charClass) {
+        return representatives[charClass];
+    }
+
+    public int getRangeCount() {
+        return rangeStarts.length;
+    }
+
+    public char getRangeStart(int range) {
+        return rangeStarts[range];
+    }
+
+    public int getRangeClass(int range) {
+        return rangeClasses[range];
+    }
+
+    // the classes the ranges consist of, in ascending order; the ranges have to be unions of classes, as in fromRanges
+    public int[] getClasses(char[] ranges) {
+        BitSet classes = new BitSet(getClassCount());
+
+        for (int i = 0; i < ranges.length; i += 2) {
+            int index = Arrays.binarySearch(rangeStarts, ranges[i]);
+
+            for (int range = index >= 0 ? index : -index - 2; range < rangeStarts.length && rangeStarts[range] <= ranges[i + 1]; range++) {
+                classes.set(rangeClasses[range]);
+            }
+        }
+
+        return classes.stream().toArray();
+    }
+
+    // the ranges of the class, such as "a-z0-9"
+    public String describe(int charClass) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int range = 0; range < rangeStarts.length; range++) {
+            if (rangeClasses[range] == charClass) {
+                char last = range == rangeStarts.length - 1 ? Character.MAX_VALUE : (char) (rangeStarts[range + 1] - 1);
+                sb.append(rangeStarts[range]);
+
+                if (last != rangeStarts[range]) {
+                    sb.append('-').append(last);
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private int lookUp(char ch) {
+        int index = Arrays.binarySearch(rangeStarts, ch);
+        return rangeClasses[index >= 0 ? index : -index - 2];
+    }
+
+}
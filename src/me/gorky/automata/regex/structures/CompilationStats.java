@@ -0,0 +1,142 @@
+package me.gorky.automata.regex.structures;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+// what a single compilation went through; the counts of the parts that weren't built are -1
+public class CompilationStats {
+
+    public enum Phase {
+        PARSE, // regex -> syntax tree
+        LOWER_TO_UTF8, // syntax tree -> syntax tree over UTF-8 bytes, see Utf8Helper
+        FIND_LITERALS, // syntax tree -> the literals the prefilter looks for, see LiteralHelper
+        BUILD_POSITION_DFA, // syntax tree -> DFA, without an NFA, see PositionHelper
+        BUILD_NFA, // syntax tree -> NFA
+        DETERMINIZE, // NFA -> DFA
+        FIND_EQUIVALENCE_CLASSES, // DFA -> equivalence classes of its states
+        MERGE_EQUIVALENCE_CLASSES, // equivalence classes -> minimized DFA
+        FLATTEN, // minimized DFA -> transition table
+        GENERATE_CODE, // transition table -> bytecode
+        INDEX_NFA // NFA -> the dense form the lazy DFA and the NFA simulation run on
+    }
+
+    private final String regex;
+
+    private String engine = null;
+
+    private int treeSize = -1;
+
+    private int nfaStateCount = -1;
+
+    private int dfaStateCount = -1;
+
+    private int equivalenceClassCount = -1;
+
+    private int minimizedDfaStateCount = -1;
+
+    private int charClassCount = -1;
+
+    private int transitionCount = -1; // of the automaton that's matched against
+
+    private final EnumMap<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+
+    public CompilationStats(String regex) {
+        this.regex = regex;
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public int getTreeSize() {
+        return treeSize;
+    }
+
+    public void setTreeSize(int treeSize) {
+        this.treeSize = treeSize;
+    }
+
+    public int getNfaStateCount() {
+        return nfaStateCount;
+    }
+
+    public void setNfaStateCount(int nfaStateCount) {
+        this.nfaStateCount = nfaStateCount;
+    }
+
+    public int getDfaStateCount() {
+        return dfaStateCount;
+    }
+
+    public void setDfaStateCount(int dfaStateCount) {
+        this.dfaStateCount = dfaStateCount;
+    }
+
+    public int getEquivalenceClassCount() {
+        return equivalenceClassCount;
+    }
+
+    public void setEquivalenceClassCount(int equivalenceClassCount) {
+        this.equivalenceClassCount = equivalenceClassCount;
+    }
+
+    public int getMinimizedDfaStateCount() {
+        return minimizedDfaStateCount;
+    }
+
+    public void setMinimizedDfaStateCount(int minimizedDfaStateCount) {
+        this.minimizedDfaStateCount = minimizedDfaStateCount;
+    }
+
+    public int getCharClassCount() {
+        return charClassCount;
+    }
+
+    public void setCharClassCount(int charClassCount) {
+        this.charClassCount = charClassCount;
+    }
+
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    public void setTransitionCount(int transitionCount) {
+        this.transitionCount = transitionCount;
+    }
+
+    // only the phases that were run, in the order they are run in
+    public Map<Phase, Long> getPhaseNanos() {
+        return Collections.unmodifiableMap(phaseNanos);
+    }
+
+    public void setPhaseNanos(Phase phase, long nanos) {
+        phaseNanos.put(phase, nanos);
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+
+        for (long nanos : phaseNanos.values()) {
+            total += nanos;
+        }
+
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "'" + regex + "' (" + engine + "): tree " + treeSize + ", NFA " + nfaStateCount + ", DFA " + dfaStateCount
+                + ", equivalence classes " + equivalenceClassCount + ", minimized DFA " + minimizedDfaStateCount + ", char classes " + charClassCount
+                + ", transitions " + transitionCount + ", phases " + phaseNanos + " ns";
+    }
+
+}
@@ -0,0 +1,341 @@
+package me.gorky.automata.regex.structures;
+
+import java.util.*;
+
+// an NFA with its states numbered densely, so that sets of states can be stored as bitsets
+public class IndexedNfa {
+
+    private final CharClassMap classes;
+
+    private final int classCount;
+
+    private final int entry;
+
+    private final boolean[] exit;
+
+    private final int[][] acceptedPatterns;
+
+    // past that many ints the closures aren't precomputed, since they may take quadratic space (think of a*a*a*... in a huge NFA);
+    // they are only ever merged into sets (see addEpsilonClosure and closureInto) rather than handed out, so nothing else makes copies of them
+    public static final int MAX_CLOSURE_SIZE = 1 << 22;
+
+    private final int[][] epsilonDestinations; // the implicit ε-loops to the states themselves are left out
+
+    // every state along with the states reachable from it via ε: small closures are sorted arrays, large ones are bitsets
+    // and for every state only one of the two is there; both are null if the closures would take too much space
+    private final int[][] sparseClosures;
+
+    private final BitSet[] denseClosures;
+
+    private final int[][] destinations; // state * classCount + class -> destinations, null if there are none
+
+    public IndexedNfa(State entryState) {
+        classes = entryState.getCharClasses();
+        classCount = classes.getClassCount();
+        entry = 0;
+
+        // breadth-first numbering of every state reachable through either letters or ε
+        Map<State, Integer> ids = new HashMap<>();
+        List<State> states = new ArrayList<>();
+        ids.put(entryState, 0);
+        states.add(entryState);
+
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+
+            for (int edge = 0; edge < state.getEdgeCount(); edge++) {
+                addId(state.getEdgeDestination(edge), ids, states);
+            }
+
+            for (State destination : state.getEpsilonDestinations()) {
+                addId(destination, ids, states);
+            }
+        }
+
+        exit = new boolean[states.size()];
+        acceptedPatterns = new int[states.size()][];
+        epsilonDestinations = new int[states.size()][];
+        destinations = new int[states.size() * classCount][];
+
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            exit[i] = state.isExit();
+            acceptedPatterns[i] = toArray(state.getAcceptedPatterns());
+            epsilonDestinations[i] = toIds(state.getEpsilonDestinations(), ids);
+
+            // the edges are sorted by letter, so those of a single letter go in a row
+            for (int first = 0, last; first < state.getEdgeCount(); first = last) {
+                char letter = state.getEdgeLetter(first);
+                last = first + 1;
+
+                while (last < state.getEdgeCount() && state.getEdgeLetter(last) == letter) {
+                    last++;
+                }
+
+                int[] letterDestinations = new int[last - first];
+
+                for (int edge = first; edge < last; edge++) {
+                    letterDestinations[edge - first] = ids.get(state.getEdgeDestination(edge));
+                }
+
+                destinations[i * classCount + classes.classOf(letter)] = letterDestinations;
+            }
+        }
+
+        int[][] sparse = new int[states.size()][];
+        BitSet[] dense = new BitSet[states.size()];
+        boolean isComputed = computeClosures(epsilonDestinations, sparse, dense);
+        sparseClosures = isComputed ? sparse : null;
+        denseClosures = isComputed ? dense : null;
+    }
+
+    // Tarjan's algorithm with an explicit stack: the states of a strongly connected component of the ε-graph all share a single closure,
+    // and the components are finished in reverse topological order, so the closures of the components that a component leads to are ready by then
+    // false if the closures take more than MAX_CLOSURE_SIZE ints
+    private static boolean computeClosures(int[][] epsilonDestinations, int[][] sparseClosures, BitSet[] denseClosures) {
+        int stateCount = epsilonDestinations.length;
+        int denseSize = stateCount / 32 + 2; // the ints a bitset of the states takes, more or less
+        int[] index = new int[stateCount];
+        int[] lowLink = new int[stateCount];
+        boolean[] isOnStack = new boolean[stateCount];
+        int[] componentStack = new int[stateCount];
+        int[] callStack = new int[stateCount];
+        int[] nextEdge = new int[stateCount]; // for every state on the call stack, the first of its ε-destinations that's yet to be visited
+        BitSet closure = new BitSet(stateCount);
+        int componentStackSize = 0;
+        int counter = 0;
+        long totalSize = 0;
+
+        Arrays.fill(index, -1);
+
+        for (int root = 0; root < stateCount; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+
+            int callStackSize = 0;
+            index[root] = lowLink[root] = counter++;
+            componentStack[componentStackSize++] = root;
+            isOnStack[root] = true;
+            callStack[callStackSize++] = root;
+            nextEdge[root] = 0;
+
+            while (callStackSize > 0) {
+                int state = callStack[callStackSize - 1];
+
+                if (nextEdge[state] < epsilonDestinations[state].length) {
+                    int destination = epsilonDestinations[state][nextEdge[state]++];
+
+                    if (index[destination] == -1) {
+                        index[destination] = lowLink[destination] = counter++;
+                        componentStack[componentStackSize++] = destination;
+                        isOnStack[destination] = true;
+                        callStack[callStackSize++] = destination;
+                        nextEdge[destination] = 0;
+                    } else if (isOnStack[destination]) {
+                        lowLink[state] = Math.min(lowLink[state], index[destination]);
+                    }
+
+                    continue;
+                }
+
+                callStackSize--;
+
+                if (callStackSize > 0) {
+                    int parent = callStack[callStackSize - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[state]);
+                }
+
+                if (lowLink[state] != index[state]) { // not the root of its component
+                    continue;
+                }
+
+                // the component is on top of the stack, down to its root; the closures of its other states are still null
+                closure.clear();
+                int componentStart = componentStackSize;
+
+                do {
+                    closure.set(componentStack[--componentStart]);
+                } while (componentStack[componentStart] != state);
+
+                for (int i = componentStart; i < componentStackSize; i++) {
+                    for (int destination : epsilonDestinations[componentStack[i]]) {
+                        if (closure.get(destination)) { // then its closure is there already
+                            continue;
+                        }
+
+                        if (denseClosures[destination] != null) {
+                            closure.or(denseClosures[destination]);
+                        } else if (sparseClosures[destination] != null) {
+                            for (int closureState : sparseClosures[destination]) {
+                                closure.set(closureState);
+                            }
+                        }
+                    }
+                }
+
+                // the states of the component share their closure
+                int size = closure.cardinality();
+                int[] sparseClosure = size < denseSize ? closure.stream().toArray() : null;
+                BitSet denseClosure = size < denseSize ? null : (BitSet) closure.clone();
+                totalSize += Math.min(size, denseSize);
+
+                if (totalSize > MAX_CLOSURE_SIZE) {
+                    return false;
+                }
+
+                for (int i = componentStart; i < componentStackSize; i++) {
+                    sparseClosures[componentStack[i]] = sparseClosure;
+                    denseClosures[componentStack[i]] = denseClosure;
+                    isOnStack[componentStack[i]] = false;
+                }
+
+                componentStackSize = componentStart;
+            }
+        }
+
+        return true;
+    }
+
+    private static void addId(State state, Map<State, Integer> ids, List<State> states) {
+        if (!ids.containsKey(state)) {
+            ids.put(state, states.size());
+            states.add(state);
+        }
+    }
+
+    private static int[] toIds(List<State> states, Map<State, Integer> ids) {
+        int[] result = new int[states.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(states.get(i));
+        }
+
+        return result;
+    }
+
+    private static int[] toArray(Set<Integer> patternIds) {
+        int[] result = new int[patternIds.size()];
+        int count = 0;
+
+        for (int patternId : patternIds) {
+            result[count++] = patternId;
+        }
+
+        return result;
+    }
+
+    // adds the state along with everything reachable from it via ε; states already in the set are considered visited
+    // the stack is a scratch array of at least getStateCount() elements, it's only used if the closures weren't precomputed
+    public void addEpsilonClosure(int state, BitSet closure, int[] stack) {
+        if (closure.get(state)) {
+            return;
+        }
+
+        if (denseClosures != null && denseClosures[state] != null) {
+            closure.or(denseClosures[state]);
+            return;
+        }
+
+        if (sparseClosures != null) {
+            for (int closureState : sparseClosures[state]) {
+                closure.set(closureState);
+            }
+
+            return;
+        }
+
+        int stackSize = 0;
+        closure.set(state);
+        stack[stackSize++] = state;
+
+        while (stackSize > 0) {
+            for (int destination : epsilonDestinations[stack[--stackSize]]) {
+                if (!closure.get(destination)) {
+                    closure.set(destination);
+                    stack[stackSize++] = destination;
+                }
+            }
+        }
+    }
+
+    // adds the state along with everything reachable from it via ε; states already in the set are considered to have their closures there too
+    // nothing is allocated: if the closures weren't precomputed, the states added to the set make the queue of a breadth-first search
+    public void closureInto(int state, SparseSet closure) {
+        if (closure.contains(state)) {
+            return;
+        }
+
+        if (sparseClosures != null && sparseClosures[state] != null) {
+            for (int closureState : sparseClosures[state]) {
+                closure.add(closureState);
+            }
+
+            return;
+        }
+
+        if (denseClosures != null) {
+            BitSet denseClosure = denseClosures[state];
+
+            for (int closureState = denseClosure.nextSetBit(0); closureState >= 0; closureState = denseClosure.nextSetBit(closureState + 1)) {
+                closure.add(closureState);
+            }
+
+            return;
+        }
+
+        int head = closure.size();
+        closure.add(state);
+
+        while (head < closure.size()) {
+            for (int destination : epsilonDestinations[closure.get(head++)]) {
+                closure.add(destination);
+            }
+        }
+    }
+
+    public boolean containsExit(BitSet states) {
+        for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+            if (exit[state]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // the ids of the patterns accepted by any of the states, in ascending order
+    public TreeSet<Integer> getAcceptedPatterns(BitSet states) {
+        TreeSet<Integer> patternIds = new TreeSet<>();
+
+        for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+            for (int patternId : acceptedPatterns[state]) {
+                patternIds.add(patternId);
+            }
+        }
+
+        return patternIds;
+    }
+
+    // null if there are none
+    public int[] getDestinations(int state, int charClass) {
+        return destinations[state * classCount + charClass];
+    }
+
+    public int getEntry() {
+        return entry;
+    }
+
+    public boolean isExit(int state) {
+        return exit[state];
+    }
+
+    public int getStateCount() {
+        return exit.length;
+    }
+
+    public CharClassMap getClasses() {
+        return classes;
+    }
+
+}
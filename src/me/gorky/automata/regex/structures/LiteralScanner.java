@@ -0,0 +1,154 @@
+package me.gorky.automata.regex.structures;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// looks for any of several strings in a single pass over the input, never going back (Aho-Corasick):
+// the strings make a trie, and a mismatch follows the failure link to the longest suffix of what was read that's in the trie too
+public class LiteralScanner {
+
+    private static final int ROOT = 0;
+
+    private final char[][] edgeLetters; // per trie node, sorted
+
+    private final int[][] edgeDestinations;
+
+    private final int[] failures;
+
+    private final boolean[] terminal; // whether one of the strings ends at the node, or at one of the nodes its failure links lead to
+
+    private final BitSet firstChars = new BitSet(); // the chars that leave the root, every other char is skipped in a tight loop
+
+    public LiteralScanner(String[] literals) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        children.add(new TreeMap<Character, Integer>());
+        ends.add(false);
+
+        for (String literal : literals) {
+            int node = ROOT;
+
+            for (int i = 0; i < literal.length(); i++) {
+                Integer child = children.get(node).get(literal.charAt(i));
+
+                if (child == null) {
+                    child = children.size();
+                    children.get(node).put(literal.charAt(i), child);
+                    children.add(new TreeMap<Character, Integer>());
+                    ends.add(false);
+                }
+
+                node = child;
+            }
+
+            ends.set(node, true);
+        }
+
+        int nodeCount = children.size();
+        edgeLetters = new char[nodeCount][];
+        edgeDestinations = new int[nodeCount][];
+        failures = new int[nodeCount];
+        terminal = new boolean[nodeCount];
+
+        for (int node = 0; node < nodeCount; node++) {
+            edgeLetters[node] = new char[children.get(node).size()];
+            edgeDestinations[node] = new int[children.get(node).size()];
+            terminal[node] = ends.get(node);
+            int edge = 0;
+
+            if (node == ROOT) {
+                for (char ch : children.get(node).keySet()) {
+                    firstChars.set(ch);
+                }
+            }
+
+            for (Map.Entry<Character, Integer> entry : children.get(node).entrySet()) {
+                edgeLetters[node][edge] = entry.getKey();
+                edgeDestinations[node][edge++] = entry.getValue();
+            }
+        }
+
+        // breadth-first, so that the failure link of a node is known before the ones of its children
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+
+        while (head < tail) {
+            int node = queue[head++];
+
+            for (int edge = 0; edge < edgeLetters[node].length; edge++) {
+                int child = edgeDestinations[node][edge];
+                failures[child] = node == ROOT ? ROOT : next(failures[node], edgeLetters[node][edge]);
+                terminal[child] |= terminal[failures[child]];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    // whether any of the strings occurs in the input at from or later
+    public boolean isFoundIn(CharSequence input, int from) {
+        if (terminal[ROOT]) { // the empty string is everywhere
+            return true;
+        }
+
+        int node = ROOT;
+
+        for (int i = from, length = input.length(); i < length; i++) {
+            char ch = input.charAt(i);
+
+            if (node == ROOT && !firstChars.get(ch)) {
+                continue;
+            }
+
+            node = next(node, ch);
+
+            if (terminal[node]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // the node reached from the given one by the char, following failure links on mismatches
+    private int next(int node, char ch) {
+        while (true) {
+            int child = getChild(node, ch);
+
+            if (child != -1) {
+                return child;
+            }
+
+            if (node == ROOT) {
+                return ROOT;
+            }
+
+            node = failures[node];
+        }
+    }
+
+    private int getChild(int node, char ch) {
+        char[] letters = edgeLetters[node];
+        int low = 0;
+        int high = letters.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (letters[middle] < ch) {
+                low = middle + 1;
+            } else if (letters[middle] > ch) {
+                high = middle - 1;
+            } else {
+                return edgeDestinations[node][middle];
+            }
+        }
+
+        return -1;
+    }
+
+}
@@ -0,0 +1,32 @@
+package me.gorky.automata.regex.structures;
+
+// a match of a regex within some input: [start, end)
+public class Match {
+
+    private final int start;
+
+    private final int end;
+
+    public Match(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public CharSequence getText(CharSequence input) {
+        return input.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+
+}
@@ -0,0 +1,39 @@
+package me.gorky.automata.regex.structures;
+
+// strings that every string matched by a regex has to contain, see LiteralHelper; an empty array means nothing is known
+public class RequiredLiterals {
+
+    private final String[] prefixes; // every matched string starts with one of them
+
+    private final String[] suffixes; // every matched string ends with one of them
+
+    private final String[] factors; // every matched string contains one of them
+
+    public RequiredLiterals(String[] prefixes, String[] suffixes, String[] factors) {
+        this.prefixes = prefixes;
+        this.suffixes = suffixes;
+        this.factors = factors;
+    }
+
+    public String[] getPrefixes() {
+        return prefixes;
+    }
+
+    public String[] getSuffixes() {
+        return suffixes;
+    }
+
+    public String[] getFactors() {
+        return factors;
+    }
+
+    public boolean isEmpty() {
+        return prefixes.length == 0 && suffixes.length == 0 && factors.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "prefixes " + String.join("|", prefixes) + ", suffixes " + String.join("|", suffixes) + ", factors " + String.join("|", factors);
+    }
+
+}
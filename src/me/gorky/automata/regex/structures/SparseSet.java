@@ -0,0 +1,42 @@
+package me.gorky.automata.regex.structures;
+
+// a set of ints below a fixed bound with O(1) insertion, lookup and clearing; the elements are kept in the order they were added
+public class SparseSet {
+
+    private final int[] dense;
+
+    private final int[] sparse;
+
+    private int size = 0;
+
+    public SparseSet(int capacity) {
+        dense = new int[capacity];
+        sparse = new int[capacity];
+    }
+
+    public boolean contains(int value) {
+        int index = sparse[value];
+        return index < size && dense[index] == value;
+    }
+
+    public void add(int value) {
+        if (!contains(value)) {
+            sparse[value] = size;
+            dense[size++] = value;
+        }
+    }
+
+    // the index-th element added since the last clear
+    public int get(int index) {
+        return dense[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+}
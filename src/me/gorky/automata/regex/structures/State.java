@@ -10,7 +10,9 @@ public class State implements Comparable<State > {
 
     public static final char EXIT_STATE_SYMBOL = 'X';
 
-    private static int counter = 0;
+    private static final char[] NO_LETTERS = new char[0];
+
+    private static final State[] NO_STATES = new State[0];
 
     private int id;
 
@@ -18,11 +20,122 @@ public class State implements Comparable<State > {
 
     private boolean isExit = false;
 
-    private TreeMap<Character, TreeSet<State>> transitions;
+    // set on minimized DFAs only (see DfaHelper.buildDfa(Set<Set<State>>)), matching can stop as soon as it reaches such a state
+    private boolean isDead = false; // no exit state can be reached from it
+
+    private boolean isAcceptingForever = false; // an exit state every input leads to exit states accepting the same patterns from
+
+    private TreeSet<Integer> acceptedPatterns = null; // only exit states of pattern sets have them
+
+    private char[] letters; // the alphabet without ε, sorted; shared by all the states of an automaton
+
+    private boolean isEpsilonAllowed; // if the alphabet contains ε, then every state has an implicit ε-loop to itself
+
+    private CharClassMap charClasses; // letters are the representatives of these classes
+
+    // the transitions are kept as edges sorted by letter and then by destination, in parallel arrays that are only filled up to edgeCount,
+    // so that a state takes as much memory as it has transitions rather than letters in the alphabet
+    private char[] edgeLetters = NO_LETTERS;
+
+    private State[] edgeDestinations = NO_STATES;
+
+    private int edgeCount = 0;
+
+    private State[] epsilonDestinations = NO_STATES; // sorted, the implicit ε-loop is left out
+
+    private int epsilonCount = 0;
+
+    // ids are handed out by StateFactory
+    State(int id, char[] letters, boolean isEpsilonAllowed, CharClassMap charClasses) {
+        this.id = id;
+        this.letters = letters;
+        this.isEpsilonAllowed = isEpsilonAllowed;
+        this.charClasses = charClasses;
+    }
+
+    public boolean isEntry() {
+        return isEntry;
+    }
+
+    public void makeEntry() {
+        isEntry = true;
+    }
+
+    public boolean isExit() {
+        return isExit;
+    }
+
+    public void makeExit() {
+        isExit = true;
+    }
+
+    public boolean isDead() {
+        return isDead;
+    }
+
+    public void makeDead() {
+        isDead = true;
+    }
+
+    public boolean isAcceptingForever() {
+        return isAcceptingForever;
+    }
+
+    public void makeAcceptingForever() {
+        isAcceptingForever = true;
+    }
+
+    // an exit state of a pattern set, accepting the pattern with the given id
+    public void makeExit(int patternId) {
+        isExit = true;
+
+        if (acceptedPatterns == null) {
+            acceptedPatterns = new TreeSet<>();
+        }
+
+        acceptedPatterns.add(patternId);
+    }
+
+    public Set<Integer> getAcceptedPatterns() {
+        return acceptedPatterns == null ? Collections.<Integer>emptySet() : Collections.unmodifiableSet(acceptedPatterns);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public CharClassMap getCharClasses() {
+        return charClasses;
+    }
+
+    // sorted, shouldn't be modified
+    public char[] getLetters() {
+        return letters;
+    }
+
+    public boolean isEpsilonAllowed() {
+        return isEpsilonAllowed;
+    }
+
+    // the letters in ascending order, followed by null (i.e. ε*) if it's allowed
+    public Set<Character> getAlphabet() {
+        Set<Character> alphabet = new LinkedHashSet<>();
+
+        for (char letter : letters) {
+            alphabet.add(letter);
+        }
+
+        if (isEpsilonAllowed) {
+            alphabet.add(null);
+        }
+
+        return alphabet;
+    }
 
-    public State(Set<Character> alphabet) throws FlawedLogicException {
-        this.id = ++counter;
-        transitions = new TreeMap<>(new Comparator<Character>() {
+    // the transitions in the form of a map from every letter of the alphabet (null for ε*) to its destinations, null if there are none
+    // it's a copy made for printing and the like, changing it doesn't affect the state
+    public TreeMap<Character, TreeSet<State>> getTransitions() {
+        TreeMap<Character, TreeSet<State>> transitions = new TreeMap<>(new Comparator<Character>() {
             @Override
             public int compare(Character c1, Character c2) {
                 if (c1 == c2)
@@ -35,59 +148,151 @@ public class State implements Comparable<State > {
             }
         });
 
-        for (Character letter : alphabet) {
-            transitions.put(letter, null);
+        for (Character letter : getAlphabet()) {
+            List<State> destinations = getDestinations(letter);
+            transitions.put(letter, destinations.isEmpty() ? null : new TreeSet<>(destinations));
         }
 
-        if (alphabet.contains(null)) { // if the alphabet contains null (i.e. ε*), then the state can transition to itself
-            addTransition(null, this);
-        }
+        return transitions;
     }
 
-    public static void setCounter(int counter) {
-        State.counter = counter;
+    // sorted; the destinations of ε* include the state itself
+    public List<State> getDestinations(Character letter) {
+        if (letter == null) {
+            List<State> destinations = new ArrayList<>(getEpsilonDestinations());
+
+            if (isEpsilonAllowed) {
+                destinations.add(this);
+                Collections.sort(destinations);
+            }
+
+            return destinations;
+        }
+
+        int first = findFirstEdge(letter);
+        int last = first;
+
+        while (last < edgeCount && edgeLetters[last] == letter) {
+            last++;
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOfRange(edgeDestinations, first, last)));
     }
 
-    public boolean isEntry() {
-        return isEntry;
+    // the first of the letter's destinations, null if there are none; that's the only one in a DFA
+    public State getDestination(char letter) {
+        int edge = findFirstEdge(letter);
+        return edge < edgeCount && edgeLetters[edge] == letter ? edgeDestinations[edge] : null;
     }
 
-    public void makeEntry() {
-        isEntry = true;
+    // sorted, without the implicit ε-loop
+    public List<State> getEpsilonDestinations() {
+        return Collections.unmodifiableList(Arrays.asList(epsilonDestinations).subList(0, epsilonCount));
     }
 
-    public boolean isExit() {
-        return isExit;
+    // the edges are sorted by letter, then by destination
+    public int getEdgeCount() {
+        return edgeCount;
     }
 
-    public void makeExit() {
-        isExit = true;
+    public char getEdgeLetter(int edge) {
+        return edgeLetters[edge];
     }
 
-    public int getId() {
-        return id;
+    public State getEdgeDestination(int edge) {
+        return edgeDestinations[edge];
     }
 
-    public TreeMap<Character, TreeSet<State>> getTransitions() {
-        return transitions;
+    // no ε-transitions (other than the implicit loop) and no more than one destination per letter
+    public boolean isDeterministic() {
+        for (int edge = 1; edge < edgeCount; edge++) {
+            if (edgeLetters[edge] == edgeLetters[edge - 1]) {
+                return false;
+            }
+        }
+
+        return epsilonCount == 0;
     }
 
     public void addTransition(Character letter, State state) throws FlawedLogicException {
-        if (!transitions.containsKey(letter)) {
+        if (letter == null ? !isEpsilonAllowed : Arrays.binarySearch(letters, letter) < 0) {
             throw new FlawedLogicException("The state's alphabet doesn't contain letter '" + letter + "'");
         }
 
-        if (!transitions.keySet().equals(state.getTransitions().keySet())) {
+        if (letters != state.letters && (isEpsilonAllowed != state.isEpsilonAllowed || !Arrays.equals(letters, state.letters))) {
             throw new FlawedLogicException("The states' alphabets do not match");
         }
 
-        if (transitions.get(letter) == null) {
-            TreeSet<State> states = new TreeSet<>();
-            states.add(state);
-            transitions.put(letter, states);
+        if (letter == null) {
+            if (state != this) {
+                addEpsilonDestination(state);
+            }
         } else {
-            transitions.get(letter).add(state);
+            addEdge(letter, state);
+        }
+    }
+
+    // the edges are mostly added in order, so the insertion point is looked for from the end
+    private void addEdge(char letter, State state) {
+        int position = edgeCount;
+
+        while (position > 0 && (edgeLetters[position - 1] > letter || edgeLetters[position - 1] == letter && edgeDestinations[position - 1].compareTo(state) > 0)) {
+            position--;
+        }
+
+        if (position > 0 && edgeLetters[position - 1] == letter && edgeDestinations[position - 1] == state) {
+            return;
+        }
+
+        if (edgeCount == edgeLetters.length) {
+            int capacity = Math.max(2, edgeCount * 2);
+            edgeLetters = Arrays.copyOf(edgeLetters, capacity);
+            edgeDestinations = Arrays.copyOf(edgeDestinations, capacity);
+        }
+
+        System.arraycopy(edgeLetters, position, edgeLetters, position + 1, edgeCount - position);
+        System.arraycopy(edgeDestinations, position, edgeDestinations, position + 1, edgeCount - position);
+        edgeLetters[position] = letter;
+        edgeDestinations[position] = state;
+        edgeCount++;
+    }
+
+    private void addEpsilonDestination(State state) {
+        int position = epsilonCount;
+
+        while (position > 0 && epsilonDestinations[position - 1].compareTo(state) > 0) {
+            position--;
+        }
+
+        if (position > 0 && epsilonDestinations[position - 1] == state) {
+            return;
+        }
+
+        if (epsilonCount == epsilonDestinations.length) {
+            epsilonDestinations = Arrays.copyOf(epsilonDestinations, Math.max(2, epsilonCount * 2));
+        }
+
+        System.arraycopy(epsilonDestinations, position, epsilonDestinations, position + 1, epsilonCount - position);
+        epsilonDestinations[position] = state;
+        epsilonCount++;
+    }
+
+    // the index of the first edge with the letter, or of the edge the letter would be inserted before
+    private int findFirstEdge(char letter) {
+        int low = 0;
+        int high = edgeCount;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (edgeLetters[middle] < letter) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
+
+        return low;
     }
 
     @Override
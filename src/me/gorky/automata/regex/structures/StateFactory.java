@@ -0,0 +1,52 @@
+package me.gorky.automata.regex.structures;
+
+import java.util.Arrays;
+import java.util.Set;
+
+// numbers the states of a single automaton, so that separate compilations don't share any counters
+public class StateFactory {
+
+    private final Set<Character> alphabet;
+
+    private final char[] letters; // shared by all the states
+
+    private final CharClassMap charClasses;
+
+    private int counter = 0;
+
+    // every letter stands for itself
+    public StateFactory(Set<Character> alphabet) {
+        this(alphabet, CharClassMap.fromLetters(alphabet));
+    }
+
+    // every letter stands for the class it's the representative of
+    public StateFactory(Set<Character> alphabet, CharClassMap charClasses) {
+        this.alphabet = alphabet;
+        this.charClasses = charClasses;
+
+        char[] sortedLetters = new char[alphabet.size()];
+        int count = 0;
+
+        for (Character letter : alphabet) {
+            if (letter != null) {
+                sortedLetters[count++] = letter;
+            }
+        }
+
+        letters = Arrays.copyOf(sortedLetters, count);
+        Arrays.sort(letters);
+    }
+
+    public State newState() {
+        return new State(++counter, letters, alphabet.contains(null), charClasses);
+    }
+
+    public Set<Character> getAlphabet() {
+        return alphabet;
+    }
+
+    public CharClassMap getCharClasses() {
+        return charClasses;
+    }
+
+}
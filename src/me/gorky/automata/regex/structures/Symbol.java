@@ -9,6 +9,10 @@ public class Symbol {
 
     public static final char CONCATENATION_SYMBOL = '·';
 
+    public static final char REPETITION_SYMBOL = '{'; // a counted repetition, such as {2,5}; its symbol holds the bounds
+
+    public static final int UNBOUNDED = -1; // the upper bound of {m,}
+
     private static final HashSet<String> TYPES;
 
     // key: operator
@@ -19,16 +23,32 @@ public class Symbol {
 
     private char value;
 
+    private char[] ranges = null; // only character classes have them: sorted and disjoint, every pair of chars is an inclusive range
+
+    private String text = null; // the way a character class or a counted repetition was written
+
+    private int[] codePointRanges = null; // the same for the code points a class matches, if they differ from its chars
+
+    private boolean isNegated = false; // only . and classes such as [^a] are, their ranges are already complemented
+
+    private int minCount = 0; // only counted repetitions have them
+
+    private int maxCount = 0;
+
     static {
         TYPES = new HashSet<>();
         TYPES.add("character");
         TYPES.add("operator");
         TYPES.add("bracket");
+        TYPES.add("class");
 
         OPERATORS = new HashMap<>();
         OPERATORS.put('|', new char[]{2, 'b'});
         OPERATORS.put(CONCATENATION_SYMBOL, new char[]{1, 'b'});
         OPERATORS.put('*', new char[]{0, 'u'});
+        OPERATORS.put('+', new char[]{0, 'u'});
+        OPERATORS.put('?', new char[]{0, 'u'});
+        OPERATORS.put(REPETITION_SYMBOL, new char[]{0, 'u'});
     }
 
     public Symbol(char value, String type) throws FlawedLogicException {
@@ -40,6 +60,14 @@ public class Symbol {
             throw new FlawedLogicException("'" + value + "' is considered to be an operator whereas it isn't");
         }
 
+        if (type.equals("operator") && value == REPETITION_SYMBOL) {
+            throw new FlawedLogicException("A counted repetition can't be made without its bounds");
+        }
+
+        if (type.equals("class")) {
+            throw new FlawedLogicException("A character class can't be made out of a single char");
+        }
+
         if (type.equals("bracket") && value != '(' && value != ')') {
             throw new FlawedLogicException("'" + value + "' is considered to be a bracket for some reason");
         }
@@ -48,6 +76,43 @@ public class Symbol {
         this.value = value;
     }
 
+    // a character class, such as [a-z]
+    public Symbol(char[] ranges, String text) throws FlawedLogicException {
+        if (ranges.length == 0 || ranges.length % 2 != 0) {
+            throw new FlawedLogicException("Character class '" + text + "' has malformed ranges");
+        }
+
+        this.type = "class";
+        this.value = text.charAt(0);
+        this.ranges = ranges;
+        this.text = text;
+    }
+
+    // a character class as it was written in a regex, such as [^a-z] or .: it matches chars or code points, depending on the engine
+    public Symbol(char[] ranges, int[] codePointRanges, String text, boolean isNegated) throws FlawedLogicException {
+        this(ranges, text);
+
+        if (codePointRanges.length == 0 || codePointRanges.length % 2 != 0) {
+            throw new FlawedLogicException("Character class '" + text + "' has malformed code point ranges");
+        }
+
+        this.codePointRanges = codePointRanges;
+        this.isNegated = isNegated;
+    }
+
+    // a counted repetition, {min,max}; max is UNBOUNDED for {min,}
+    public Symbol(int minCount, int maxCount, String text) throws FlawedLogicException {
+        if (minCount < 0 || maxCount != UNBOUNDED && maxCount < minCount) {
+            throw new FlawedLogicException("Counted repetition '" + text + "' has malformed bounds");
+        }
+
+        this.type = "operator";
+        this.value = REPETITION_SYMBOL;
+        this.text = text;
+        this.minCount = minCount;
+        this.maxCount = maxCount;
+    }
+
     public static boolean isOperator(char ch) {
         return OPERATORS.containsKey(ch);
     }
@@ -92,13 +157,62 @@ public class Symbol {
         return isBracket() && value == ')';
     }
 
+    public boolean isClass() {
+        return type.equals("class");
+    }
+
+    public boolean isNegated() {
+        return isNegated;
+    }
+
+    // the chars an operand matches, in the same form as the ranges of a character class
+    public char[] getRanges() throws FlawedLogicException {
+        if (isClass()) {
+            return ranges;
+        }
+
+        if (!type.equals("character")) {
+            throw new FlawedLogicException("Attempted to get ranges of a non-operand symbol '" + value + "'");
+        }
+
+        return new char[]{value, value};
+    }
+
+    // the code points an operand matches, in the same form; they're its chars unless it's a class made with code points of its own
+    public int[] getCodePointRanges() throws FlawedLogicException {
+        if (codePointRanges != null) {
+            return codePointRanges;
+        }
+
+        char[] charRanges = getRanges();
+        int[] result = new int[charRanges.length];
+
+        for (int i = 0; i < charRanges.length; i++) {
+            result[i] = charRanges[i];
+        }
+
+        return result;
+    }
+
+    public boolean isRepetition() {
+        return isOperator() && value == REPETITION_SYMBOL;
+    }
+
+    public int getMinCount() {
+        return minCount;
+    }
+
+    public int getMaxCount() {
+        return maxCount;
+    }
+
     public char toChar() {
         return value;
     }
 
     @Override
     public String toString() {
-        return Character.toString(value);
+        return text != null ? text : Character.toString(value);
     }
 
 }